@@ -128,13 +128,16 @@ public class BMSFireAgent implements DCOPAgent {
         // of this agent for each fire.
         WeightingFactor<NodeID> agentFactor = new WeightingFactor<>(variableNode);
 
-        for (EntityID fire : problem.getFireAgentNeighbors(id)) {
+        final List<EntityID> fires = problem.getFires();
+        final int i = problem.getFireAgentIndex(id);
+        for (int j : problem.getFireAgentNeighborIndices(i)) {
+            final EntityID fire = fires.get(j);
             NodeID fireID = new NodeID(null, fire);
             // Link the agent to each fire
             agentFactor.addNeighbor(fireID);
 
             // ... and populate the utilities
-            double value = problem.getFireUtility(id, fire);
+            double value = problem.getFireUtility(i, j);
             if (problem.isFireAgentBlocked(id, fire)) {
                 value -= problem.getConfig().getFloatValue(Constants.KEY_BLOCKED_FIRE_PENALTY);
             }
@@ -160,14 +163,16 @@ public class BMSFireAgent implements DCOPAgent {
      *
      **/
     private void addUtilityNodes() {
+        ArrayList<EntityID> agents = problem.getFireAgents();
         ArrayList<EntityID> fires  = problem.getFires();
         final int nAgents = problem.getNumFireAgents();
         final int nFires  = fires.size();
-        final int nAgent  = problem.getFireAgents().indexOf(id);
+        final int nAgent  = problem.getFireAgentIndex(id);
 
         // Iterate over the fires whose utility functions must run within this agent.
         for (int i = nAgent; i < nFires; i += nAgents) {
             final EntityID fire = fires.get(i);
+            final int fireIdx = i;
             final NodeID fireID = new NodeID(null, fire);
 
             // Build the utility node
@@ -178,14 +183,14 @@ public class BMSFireAgent implements DCOPAgent {
             CardinalityFunction wf = new CardinalityFunction() {
                 @Override
                 public double getCost(int nActiveVariables) {
-                    return - problem.getUtilityPenalty(fire, nActiveVariables);
+                    return - problem.getUtilityPenalty(fireIdx, nActiveVariables);
                 }
             };
             f.setFunction(wf);
 
             // Link the fire with all its neighboring agents
-            for (EntityID agent : problem.getFireNeighbors(fire)) {
-                f.addNeighbor(new NodeID(agent, null));
+            for (int agent : problem.getFireNeighborIndices(i)) {
+                f.addNeighbor(new NodeID(agents.get(agent), null));
             }
 
             // Finally add the factor to this agent
@@ -136,13 +136,16 @@ public class BMSPoliceAgent implements DCOPAgent {
         // of this agent for each blockade.
         WeightingFactor<NodeID> agentFactor = new WeightingFactor<>(variableNode);
 
-        for (EntityID blockade : problem.getBlockades()) {
+        final ArrayList<EntityID> blockades = problem.getBlockades();
+        final int i = problem.getPoliceAgentIndex(id);
+        for (int j : problem.getPoliceAgentNeighborIndices(i)) {
+            final EntityID blockade = blockades.get(j);
             NodeID blockadeID = new NodeID(null, blockade);
             // Link the agent to each fire
             agentFactor.addNeighbor(blockadeID);
 
             // ... and populate the utilities
-            double value = problem.getPoliceUtility(id, blockade);
+            double value = problem.getPoliceUtility(i, j);
             if (problem.isPoliceAgentBlocked(id, blockade)) {
                 value -= BLOCKED_PENALTY;
             }
@@ -172,7 +175,7 @@ public class BMSPoliceAgent implements DCOPAgent {
         ArrayList<EntityID> blockades  = problem.getBlockades();
         final int nAgents = agents.size();
         final int nBlockades = blockades.size();
-        final int nAgent = agents.indexOf(id);
+        final int nAgent = problem.getPoliceAgentIndex(id);
 
         // Iterate over the blockades whose factors must run within this agent
         for (int i = nAgent; i < nBlockades; i += nAgents) {
@@ -187,9 +190,9 @@ public class BMSPoliceAgent implements DCOPAgent {
                 }
             });
 
-            // Link the blockade with all agents
-            for (EntityID agent : agents) {
-                f.addNeighbor(new NodeID(agent, null));
+            // Link the blockade with its neighboring agents
+            for (int j : problem.getBlockadeNeighborIndices(i)) {
+                f.addNeighbor(new NodeID(agents.get(j), null));
             }
 
             // Finally add the factor to this agent
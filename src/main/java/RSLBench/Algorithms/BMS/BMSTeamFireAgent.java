@@ -146,6 +146,8 @@ public class BMSTeamFireAgent implements DCOPAgent {
      */
     private void addFirefighterFactor() {
         List<EntityID> fires = problem.getFireAgentNeighbors(id);
+        final int i = problem.getFireAgentIndex(id);
+        final int[] fireIndices = problem.getFireAgentNeighborIndices(i);
         this.variableNode = new BMSSelectorFactor<>();
 
         // The agent's factor is the selector plus the independent utilities
@@ -159,7 +161,7 @@ public class BMSTeamFireAgent implements DCOPAgent {
             agentFactor.addNeighbor(agentToFireID);
 
             // ... and populate the utilities
-            double value = problem.getFireUtility(id, fire);
+            double value = problem.getFireUtility(i, fireIndices[fireIndex]);
             if (problem.isFireAgentBlocked(id, fire)) {
                 value -= BLOCKED_PENALTY;
 
@@ -213,15 +215,17 @@ public class BMSTeamFireAgent implements DCOPAgent {
      *
      **/
     private void addFireNodes() {
+        ArrayList<EntityID> agents = problem.getFireAgents();
         ArrayList<EntityID> fires  = problem.getFires();
         final int nAgents = problem.getNumFireAgents();
         final int nFires  = fires.size();
-        final int nAgent  = problem.getFireAgents().indexOf(id);
+        final int nAgent  = problem.getFireAgentIndex(id);
 
         // Iterate over the fires whose utility functions must run within this
         // agent.
         for (int i = nAgent; i < nFires; i += nAgents) {
             final EntityID fire = fires.get(i);
+            final int fireIdx = i;
             final NodeID fireID = new NodeID(null, fire);
 
             // Build the utility node
@@ -232,14 +236,14 @@ public class BMSTeamFireAgent implements DCOPAgent {
             CardinalityFunction wf = new CardinalityFunction() {
                 @Override
                 public double getCost(int nActiveVariables) {
-                    return - problem.getUtilityPenalty(fire, nActiveVariables);
+                    return - problem.getUtilityPenalty(fireIdx, nActiveVariables);
                 }
             };
             f.setFunction(wf);
 
             // Link the fire with all agents' variables
-            for (EntityID agent : problem.getFireNeighbors(fire)) {
-                f.addNeighbor(new NodeID(agent, fire));
+            for (int agent : problem.getFireNeighborIndices(i)) {
+                f.addNeighbor(new NodeID(agents.get(agent), fire));
             }
 
             // Finally add the factor to this agent
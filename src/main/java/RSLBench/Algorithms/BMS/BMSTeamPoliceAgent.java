@@ -60,7 +60,6 @@ import RSLBench.Comm.CommunicationLayer;
 import RSLBench.Constants;
 import RSLBench.Helpers.Utility.ProblemDefinition;
 import es.csic.iiia.bms.factors.WeightingFactor;
-import rescuecore2.misc.Pair;
 
 /**
  * This is a binary max-sum police agent.
@@ -136,13 +135,16 @@ public class BMSTeamPoliceAgent implements DCOPAgent {
         // The agent's factor is the selector plus the independent utilities
         // of this agent for each blockade.
         WeightingFactor<NodeID> agentFactor = new WeightingFactor<>(variableNode);
-        for (EntityID blockade : problem.getBlockades()) {
+        final ArrayList<EntityID> blockades = problem.getBlockades();
+        final int i = problem.getPoliceAgentIndex(id);
+        for (int j : problem.getPoliceAgentNeighborIndices(i)) {
+            final EntityID blockade = blockades.get(j);
             NodeID blockadeID = new NodeID(blockade, null);
             // Link the agent to each fire
             agentFactor.addNeighbor(blockadeID);
 
             // ... and populate the utilities
-            double value = problem.getPoliceUtility(id, blockade);
+            double value = problem.getPoliceUtility(i, j);
             if (problem.isPoliceAgentBlocked(id, blockade)) {
                 value -= BLOCKED_PENALTY;
             }
@@ -172,7 +174,7 @@ public class BMSTeamPoliceAgent implements DCOPAgent {
         ArrayList<EntityID> blockades  = problem.getBlockades();
         final int nAgents = policeAgents.size();
         final int nBlockades = blockades.size();
-        final int nAgent = policeAgents.indexOf(id);
+        final int nAgent = problem.getPoliceAgentIndex(id);
 
         // Iterate over the blockades whose factors must run within this agent
         for (int i = nAgent; i < nBlockades; i += nAgents) {
@@ -186,9 +188,9 @@ public class BMSTeamPoliceAgent implements DCOPAgent {
             condition.setConditionNeighbor(cVariableID);
             f.setPotential(cVariableID, POLICE_ETA);
 
-            // Link the blockade with all police agents
-            for (EntityID policeAgent : policeAgents) {
-                f.addNeighbor(new NodeID(policeAgent, null));
+            // Link the blockade with its neighboring police agents
+            for (int j : problem.getBlockadeNeighborIndices(i)) {
+                f.addNeighbor(new NodeID(policeAgents.get(j), null));
             }
 
             // Add the factor to this agent
@@ -197,10 +199,15 @@ public class BMSTeamPoliceAgent implements DCOPAgent {
             // ... And now create the coordination variable for this blockade
             BMSVariableFactor<NodeID> cVariable = new BMSVariableFactor<>();
             cVariable.addNeighbor(new NodeID(blockade, null));
-            // Link with the firefighters nodes
-            for (Pair<EntityID, EntityID> entry : problem.getFireAgentsBlockedByBlockade(blockade)) {
-                EntityID fireAgent = entry.first();
-                EntityID fire = entry.second();
+            // Link with the firefighters nodes (only for fires that they may attend)
+            for (int k=0; k<problem.getNumBlockedPairs(i); k++) {
+                final int fireAgentIdx = problem.getBlockedFireAgent(i, k);
+                final int fireIdx = problem.getBlockedFire(i, k);
+                if (!problem.isFireAgentNeighbor(fireAgentIdx, fireIdx)) {
+                    continue;
+                }
+                EntityID fireAgent = problem.getFireAgents().get(fireAgentIdx);
+                EntityID fire = problem.getFires().get(fireIdx);
                 NodeID incentiveID = new NodeID(fireAgent, fire, blockade);
                 cVariable.addNeighbor(incentiveID);
                 factorLocations.put(incentiveID, fireAgent);
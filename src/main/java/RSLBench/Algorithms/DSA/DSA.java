@@ -7,6 +7,7 @@ package RSLBench.Algorithms.DSA;
 import RSLBench.Assignment.DCOP.DCOPAgent;
 import RSLBench.Assignment.DCOP.DCOPSolver;
 import RSLBench.Constants;
+import RSLBench.Helpers.Utility.ProblemDefinition;
 import java.util.List;
 import rescuecore2.standard.entities.StandardEntityURN;
 
@@ -44,23 +45,61 @@ public class DSA extends DCOPSolver {
      */
     public static final String TARGET_LAST = "last";
 
+    /**
+     * Whether agents only message their neighbors when their target changes, instead of
+     * doing so at every iteration.
+     */
+    public static final String KEY_DSA_SEND_ON_CHANGE = "dsa.send_on_change";
+
+    /**
+     * Interaction graph of the problem being solved, shared by all the agents.
+     */
+    private NeighborhoodIndex neighborhood;
+
     @Override
     public String getIdentifier() {
         return "DSA";
     }
 
+    @Override
+    protected void initializeAgents(ProblemDefinition problem) {
+        // Compute the neighborhoods once instead of having each agent compute its own
+        final long startTime = System.currentTimeMillis();
+        final boolean team = config.getBooleanValue(Constants.KEY_INTERTEAM_COORDINATION);
+        neighborhood = new NeighborhoodIndex(problem, team);
+        stats.report("neighborhood_time", System.currentTimeMillis() - startTime);
+
+        super.initializeAgents(problem);
+    }
+
     @Override
     protected DCOPAgent buildAgent(StandardEntityURN type) {
+        return buildAgent(type, neighborhood);
+    }
+
+    /**
+     * Build a DSA agent of the given type, linked to the given interaction graph.
+     *
+     * @param type type of agent to build.
+     * @param neighborhood interaction graph of the problem being solved.
+     * @return the new (uninitialized) agent.
+     */
+    protected DSAAbstractAgent buildAgent(StandardEntityURN type, NeighborhoodIndex neighborhood) {
         final boolean team = config.getBooleanValue(Constants.KEY_INTERTEAM_COORDINATION);
 
+        DSAAbstractAgent agent;
         switch(type) {
             case FIRE_BRIGADE:
-                return team ? new DSATeamFireAgent() : new DSAFireAgent();
+                agent = team ? new DSATeamFireAgent() : new DSAFireAgent();
+                break;
             case POLICE_FORCE:
-                return team ? new DSATeamPoliceAgent() : new DSAPoliceAgent();
+                agent = team ? new DSATeamPoliceAgent() : new DSAPoliceAgent();
+                break;
             default:
                 throw new UnsupportedOperationException("The DSA solver does not support agents of type " + type);
         }
+        agent.setNeighborhood(neighborhood);
+        return agent;
     }
 
     @Override
@@ -68,6 +107,7 @@ public class DSA extends DCOPSolver {
         List<String> keys = super.getUsedConfigurationKeys();
         keys.add(KEY_DSA_PROBABILITY);
         keys.add(KEY_DSA_INITIAL_TARGET);
+        keys.add(KEY_DSA_SEND_ON_CHANGE);
         return keys;
     }
 
@@ -9,9 +9,9 @@ import RSLBench.Helpers.Utility.ProblemDefinition;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Random;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import rescuecore2.config.Config;
@@ -25,20 +25,33 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
     private static final Logger Logger = LogManager.getLogger(DSAAbstractAgent.class);
 
     private boolean INITIALIZE_RANDOMLY;
+    private boolean SEND_ON_CHANGE;
 
     private ProblemDefinition problem;
     private EntityID id;
     private EntityID target;
     private TargetScores targetScores;
     private Config config;
+    private Random random;
 
     private int nCCCs = 0;
 
     /**
-     * The set of neighboring agents with which to communicate. This must include all agents that
+     * The target announced to the neighbors in the latest message sent, used to skip sending
+     * messages when nothing has changed.
+     */
+    private EntityID lastSentTarget;
+
+    /**
+     * The interaction graph of the problem, shared by all the DSA agents.
+     */
+    private NeighborhoodIndex neighborhood;
+
+    /**
+     * The list of neighboring agents with which to communicate. This must include all agents that
      * have a common candidate target with us.
      */
-    private Set<EntityID> neighbors;
+    private List<EntityID> neighbors;
 
     /**
      * The list of candidate targets for this agent.
@@ -73,12 +86,14 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
     }
 
     /**
-     * Compute the set of neighbors of this agent. This includes all agents that share any common
-     * candidate target with this one.
+     * Set the interaction graph from which this agent obtains its neighbors. It must be set
+     * before the agent is initialized.
      *
-     * @return set of neighbors of this agent
+     * @param neighborhood interaction graph of the problem being solved.
      */
-    protected abstract HashSet<EntityID> computeNeighbors();
+    void setNeighborhood(NeighborhoodIndex neighborhood) {
+        this.neighborhood = neighborhood;
+    }
 
     /**
      * Compute the list of candidate targets of this agent.
@@ -108,6 +123,16 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
      */
     protected abstract EntityID getPreferredTarget();
 
+    /**
+     * Set the random number generator used by this agent. If none is set before the agent is
+     * initialized, the global one provided by the configuration is used.
+     *
+     * @param random random number generator for this agent.
+     */
+    void setRandom(Random random) {
+        this.random = random;
+    }
+
     @Override
     public void initialize(Config config, EntityID id, ProblemDefinition problem) {
         this.id = id;
@@ -115,21 +140,25 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
         targetScores = new TargetScores(id, problem);
         target = Assignment.UNKNOWN_TARGET_ID;
         this.config = config;
+        if (random == null) {
+            random = config.getRandom();
+        }
+        SEND_ON_CHANGE = config.getBooleanValue(DSA.KEY_DSA_SEND_ON_CHANGE, false);
+        lastSentTarget = null;
         String initMethod = config.getValue(DSA.KEY_DSA_INITIAL_TARGET, DSA.TARGET_RANDOM);
 
         // Set the scoring function used by this agent
         targetScores.setScoringFunction(buildScoringFunction());
 
-        // The neighbors of this agent are all candidates of all eligible fires
-        neighbors = computeNeighbors();
-        neighbors.remove(id);
+        // The neighbors of this agent are precomputed in the shared interaction graph
+        neighbors = neighborhood.getNeighbors(id);
 
         // Obtain the list of candidate targets for this agent and choose a random one
         candidateTargets = computeCandidates();
         if (candidateTargets.size() > 0) {
             switch(initMethod.toLowerCase()) {
                 case DSA.TARGET_RANDOM:
-                    target = candidateTargets.get(config.getRandom().nextInt(candidateTargets.size()));
+                    target = candidateTargets.get(random.nextInt(candidateTargets.size()));
                     break;
                 case DSA.TARGET_BEST:
                     target = getPreferredTarget();
@@ -165,7 +194,7 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
 
         if (!bestTarget.equals(target)) {
             Logger.debug("Agent {} had target {} before, now wants {}", id, target, bestTarget);
-            if (config.getRandom().nextDouble() <= config.getFloatValue(DSA.KEY_DSA_PROBABILITY)) {
+            if (random.nextDouble() <= config.getFloatValue(DSA.KEY_DSA_PROBABILITY)) {
                 Logger.trace("Agent {} passes the dice throw and changes to {}", id, bestTarget);
                 target = bestTarget;
             }
@@ -193,7 +222,13 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
 
     @Override
     public Collection<Message> sendMessages(CommunicationLayer com) {
-        Collection<Message> sentMessages = new ArrayList<>();
+        // Neighbors keep a persistent view of our choice, so we only need to notify changes
+        if (SEND_ON_CHANGE && target.equals(lastSentTarget)) {
+            return Collections.emptyList();
+        }
+        lastSentTarget = target;
+
+        Collection<Message> sentMessages = new ArrayList<>(neighbors.size());
         final AssignmentMessage msg = new AssignmentMessage(id, target);
 
         for (EntityID neighbor : neighbors) {
@@ -207,7 +242,9 @@ public abstract class DSAAbstractAgent implements DCOPAgent {
     @Override
     public void receiveMessages(Collection<Message> messages) {
         Logger.trace("ReceiveMessages start, {} messages in queue.", messages.size());
-        targetScores.resetAssignments();
+        if (!SEND_ON_CHANGE) {
+            targetScores.resetAssignments();
+        }
         nCCCs = 0;
         for (Message m : messages) {
             if (m instanceof AssignmentMessage) {
@@ -2,9 +2,7 @@ package RSLBench.Algorithms.DSA;
 
 import RSLBench.Algorithms.DSA.scoring.FireScoringFunction;
 import RSLBench.Assignment.Assignment;
-import RSLBench.Helpers.Utility.ProblemDefinition;
 
-import java.util.HashSet;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -18,19 +16,6 @@ import rescuecore2.worldmodel.EntityID;
 public class DSAFireAgent extends DSAAbstractAgent {
     private static final Logger Logger = LogManager.getLogger(DSAFireAgent.class);
 
-    @Override
-    protected HashSet<EntityID> computeNeighbors() {
-        final ProblemDefinition problem = getProblem();
-        final EntityID id = getID();
-
-        // The neighbors of this agent are all candidates of all eligible fires
-        HashSet<EntityID> neighbors = new HashSet<>();
-        for (EntityID fire : problem.getFireAgentNeighbors(id)) {
-            neighbors.addAll(problem.getFireNeighbors(fire));
-        }
-        return neighbors;
-    }
-
     @Override
     protected List<EntityID> computeCandidates() {
         return getProblem().getFireAgentNeighbors(getID());
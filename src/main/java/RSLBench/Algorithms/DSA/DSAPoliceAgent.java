@@ -6,9 +6,7 @@ package RSLBench.Algorithms.DSA;
 
 import RSLBench.Algorithms.DSA.scoring.BlockadeScoringFunction;
 import RSLBench.Algorithms.DSA.scoring.ScoringFunction;
-import RSLBench.Helpers.Utility.ProblemDefinition;
 
-import java.util.HashSet;
 import java.util.List;
 
 import rescuecore2.worldmodel.EntityID;
@@ -19,18 +17,6 @@ import rescuecore2.worldmodel.EntityID;
  */
 public class DSAPoliceAgent extends DSAAbstractAgent {
 
-    @Override
-    protected HashSet<EntityID> computeNeighbors() {
-        final EntityID id = getID();
-        final ProblemDefinition problem = getProblem();
-
-        HashSet<EntityID> neighbors = new HashSet<>();
-        for (EntityID blockade : problem.getPoliceAgentNeighbors(id)) {
-            neighbors.addAll(problem.getBlockadeNeighbors(blockade));
-        }
-        return neighbors;
-    }
-
     @Override
     protected List<EntityID> computeCandidates() {
         return getProblem().getPoliceAgentNeighbors(getID());
@@ -3,9 +3,7 @@ package RSLBench.Algorithms.DSA;
 import RSLBench.Algorithms.DSA.scoring.FireScoringFunction;
 import RSLBench.Algorithms.DSA.scoring.FireTeamScoringFunction;
 import RSLBench.Assignment.Assignment;
-import RSLBench.Helpers.Utility.ProblemDefinition;
 
-import java.util.HashSet;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -19,23 +17,6 @@ import rescuecore2.worldmodel.EntityID;
 public class DSATeamFireAgent extends DSAAbstractAgent {
     private static final Logger Logger = LogManager.getLogger(DSATeamFireAgent.class);
 
-    @Override
-    protected HashSet<EntityID> computeNeighbors() {
-        final ProblemDefinition problem = getProblem();
-        final EntityID id = getID();
-
-        // The neighbors of this agent are all candidates of all eligible fires, and all candidates
-        // of all blockades preventing us from reaching some fire
-        HashSet<EntityID> neighbors = new HashSet<>();
-        for (EntityID fire : problem.getFireAgentNeighbors(id)) {
-            neighbors.addAll(problem.getFireNeighbors(fire));
-
-            EntityID blockade = problem.getBlockadeBlockingFireAgent(id, fire);
-            neighbors.addAll(problem.getBlockadeNeighbors(blockade));
-        }
-        return neighbors;
-    }
-
     @Override
     protected List<EntityID> computeCandidates() {
         return getProblem().getFireAgentNeighbors(getID());
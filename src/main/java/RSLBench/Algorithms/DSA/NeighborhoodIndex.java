@@ -0,0 +1,239 @@
+package RSLBench.Algorithms.DSA;
+
+import RSLBench.Helpers.Utility.ProblemDefinition;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Agent to agent interaction graph of a DSA problem.
+ * <p/>
+ * Two agents are neighbors if the choice of one of them can change the score
+ * of the other one's candidates. That is:
+ * <ul>
+ * <li>Fire agents that share some candidate fire.</li>
+ * <li>Police agents that share some candidate blockade.</li>
+ * <li>(Only with inter-team coordination) A fire agent blocked from reaching
+ * one of its candidate fires and the police agents that are candidates to
+ * clear the blocking blockade.</li>
+ * </ul>
+ * The graph is computed once per problem and stored in compressed sparse row
+ * form, so that it can be shared (read-only) by all the DSA agents. Agents
+ * are indexed densely, with fire agents first followed by police agents.
+ */
+public class NeighborhoodIndex {
+    private static final Logger Logger = LogManager.getLogger(NeighborhoodIndex.class);
+
+    private final ProblemDefinition problem;
+    private final int nFireAgents;
+    private final int nAgents;
+
+    /** Neighbors of agent i are adjacency[offsets[i]] ... adjacency[offsets[i+1]-1] */
+    private final int[] offsets;
+    private final int[] adjacency;
+
+    /**
+     * Build the interaction graph of the given problem.
+     *
+     * @param problem problem whose agents to link.
+     * @param team whether fire and police agents coordinate with each other.
+     */
+    public NeighborhoodIndex(ProblemDefinition problem, boolean team) {
+        this.problem = problem;
+        nFireAgents = problem.getNumFireAgents();
+        nAgents = nFireAgents + problem.getPoliceAgents().size();
+
+        final List<EntityID> fireAgents = problem.getFireAgents();
+        final List<EntityID> policeAgents = problem.getPoliceAgents();
+        final int nPoliceAgents = nAgents - nFireAgents;
+
+        // Scratch space to compute each row without allocating sets
+        final int[] stamps = new int[nAgents];
+        final int[] row = new int[nAgents];
+        final int[][] rows = new int[nAgents][];
+
+        // Fire agents
+        final int[] policeDegrees = new int[nPoliceAgents];
+        for (int i=0; i<nFireAgents; i++) {
+            final EntityID agent = fireAgents.get(i);
+            final int stamp = i+1;
+            stamps[i] = stamp;
+            int n = 0;
+
+            final List<EntityID> candidates = problem.getFireAgentNeighbors(agent);
+            for (int k=0; k<candidates.size() && n < nFireAgents-1; k++) {
+                for (EntityID neighbor : problem.getFireNeighbors(candidates.get(k))) {
+                    final int j = problem.getFireAgentIndex(neighbor);
+                    if (stamps[j] != stamp) {
+                        stamps[j] = stamp;
+                        row[n++] = j;
+                    }
+                }
+            }
+
+            if (team) {
+                int nPolice = 0;
+                for (int k=0; k<candidates.size() && nPolice < nPoliceAgents; k++) {
+                    final EntityID blockade = problem.getBlockadeBlockingFireAgent(agent, candidates.get(k));
+                    if (blockade == null) {
+                        continue;
+                    }
+                    for (EntityID neighbor : problem.getBlockadeNeighbors(blockade)) {
+                        final int j = nFireAgents + problem.getPoliceAgentIndex(neighbor);
+                        if (stamps[j] != stamp) {
+                            stamps[j] = stamp;
+                            row[n++] = j;
+                            policeDegrees[j - nFireAgents]++;
+                            nPolice++;
+                        }
+                    }
+                }
+            }
+
+            rows[i] = new int[n];
+            System.arraycopy(row, 0, rows[i], 0, n);
+        }
+
+        // Police agents, whose neighboring fire agents are those linked to them above
+        final int[][] policeToFire = new int[nPoliceAgents][];
+        for (int p=0; p<nPoliceAgents; p++) {
+            policeToFire[p] = new int[policeDegrees[p]];
+            policeDegrees[p] = 0;
+        }
+        for (int i=0; i<nFireAgents; i++) {
+            for (int j : rows[i]) {
+                if (j >= nFireAgents) {
+                    final int p = j - nFireAgents;
+                    policeToFire[p][policeDegrees[p]++] = i;
+                }
+            }
+        }
+
+        for (int p=0; p<nPoliceAgents; p++) {
+            final EntityID agent = policeAgents.get(p);
+            final int i = nFireAgents + p;
+            final int stamp = i+1;
+            stamps[i] = stamp;
+            int n = 0;
+
+            final List<EntityID> candidates = problem.getPoliceAgentNeighbors(agent);
+            for (int k=0; k<candidates.size() && n < nPoliceAgents-1; k++) {
+                for (EntityID neighbor : problem.getBlockadeNeighbors(candidates.get(k))) {
+                    final int j = nFireAgents + problem.getPoliceAgentIndex(neighbor);
+                    if (stamps[j] != stamp) {
+                        stamps[j] = stamp;
+                        row[n++] = j;
+                    }
+                }
+            }
+            for (int j : policeToFire[p]) {
+                row[n++] = j;
+            }
+
+            rows[i] = new int[n];
+            System.arraycopy(row, 0, rows[i], 0, n);
+        }
+
+        // Pack everything in CSR form
+        offsets = new int[nAgents+1];
+        for (int i=0; i<nAgents; i++) {
+            offsets[i+1] = offsets[i] + rows[i].length;
+        }
+        adjacency = new int[offsets[nAgents]];
+        for (int i=0; i<nAgents; i++) {
+            System.arraycopy(rows[i], 0, adjacency, offsets[i], rows[i].length);
+        }
+
+        Logger.debug("Neighborhood index built with {} agents and {} links.", nAgents, adjacency.length);
+    }
+
+    /**
+     * Get the total number of agents in the graph.
+     *
+     * @return number of agents.
+     */
+    public int getNumAgents() {
+        return nAgents;
+    }
+
+    /**
+     * Get the dense index of the given agent.
+     *
+     * @param agent fire or police agent.
+     * @return index of that agent in this graph, or -1 if it is not part of the problem.
+     */
+    public int getAgentIndex(EntityID agent) {
+        int idx = problem.getFireAgentIndex(agent);
+        if (idx >= 0) {
+            return idx;
+        }
+        idx = problem.getPoliceAgentIndex(agent);
+        return idx >= 0 ? nFireAgents + idx : -1;
+    }
+
+    /**
+     * Get the agent with the given dense index.
+     *
+     * @param index index of the agent.
+     * @return the corresponding agent.
+     */
+    public EntityID getAgent(int index) {
+        if (index < nFireAgents) {
+            return problem.getFireAgents().get(index);
+        }
+        return problem.getPoliceAgents().get(index - nFireAgents);
+    }
+
+    /**
+     * Get the number of neighbors of the agent with the given index.
+     *
+     * @param index index of the agent.
+     * @return number of neighbors.
+     */
+    public int getDegree(int index) {
+        return offsets[index+1] - offsets[index];
+    }
+
+    /**
+     * Get the index of the k-th neighbor of the agent with the given index.
+     *
+     * @param index index of the agent.
+     * @param k position of the neighbor, between 0 and the agent's degree.
+     * @return index of the neighbor.
+     */
+    public int getNeighbor(int index, int k) {
+        return adjacency[offsets[index] + k];
+    }
+
+    /**
+     * Get a read-only view of the neighbors of the given agent.
+     *
+     * @param agent agent whose neighbors to retrieve.
+     * @return list of neighbors (not including the agent itself).
+     */
+    public List<EntityID> getNeighbors(EntityID agent) {
+        final int index = getAgentIndex(agent);
+        if (index < 0) {
+            return new ArrayList<>(0);
+        }
+
+        return new AbstractList<EntityID>() {
+            @Override
+            public EntityID get(int k) {
+                return getAgent(getNeighbor(index, k));
+            }
+
+            @Override
+            public int size() {
+                return getDegree(index);
+            }
+        };
+    }
+
+}
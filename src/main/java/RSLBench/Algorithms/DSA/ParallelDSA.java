@@ -0,0 +1,291 @@
+package RSLBench.Algorithms.DSA;
+
+import RSLBench.Assignment.Assignment;
+import RSLBench.Comm.CommunicationLayer;
+import RSLBench.Comm.Message;
+import RSLBench.Constants;
+import RSLBench.Helpers.Utility.ProblemDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * DSA solver that runs several independent restarts concurrently and keeps the best one.
+ * <p/>
+ * Each restart has its own agents (and hence its own {@link TargetScores}) and its own random
+ * stream, seeded from the global one. All restarts share the same (read-only) problem
+ * definition and interaction graph, and stop when they converge, reach the maximum number of
+ * iterations or run out of time.
+ */
+public class ParallelDSA extends DSA {
+    private static final Logger Logger = LogManager.getLogger(ParallelDSA.class);
+
+    /**
+     * The number of independent DSA runs performed at each step.
+     */
+    public static final String KEY_DSA_RESTARTS = "dsa.restarts";
+
+    /**
+     * The number of threads used to run the restarts (0 to use one per available core).
+     */
+    public static final String KEY_DSA_THREADS = "dsa.threads";
+
+    @Override
+    public String getIdentifier() {
+        return "ParallelDSA";
+    }
+
+    @Override
+    public List<String> getUsedConfigurationKeys() {
+        List<String> keys = super.getUsedConfigurationKeys();
+        keys.add(KEY_DSA_RESTARTS);
+        keys.add(KEY_DSA_THREADS);
+        return keys;
+    }
+
+    @Override
+    public Assignment compute(ProblemDefinition problem) {
+        final long startTime = System.currentTimeMillis();
+        final int nRestarts = Math.max(1, config.getIntValue(KEY_DSA_RESTARTS, 4));
+        int nThreads = config.getIntValue(KEY_DSA_THREADS, 0);
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        nThreads = Math.min(nThreads, nRestarts);
+
+        final boolean team = config.getBooleanValue(Constants.KEY_INTERTEAM_COORDINATION);
+        final NeighborhoodIndex neighborhood = new NeighborhoodIndex(problem, team);
+        stats.report("neighborhood_time", System.currentTimeMillis() - startTime);
+
+        // The configuration caches parsed values in unsynchronized maps, so all values read by
+        // the restarts must be parsed before running them concurrently
+        config.getIntValue(KEY_DCOP_ITERATIONS);
+        config.getFloatValue(KEY_DSA_PROBABILITY);
+        config.getBooleanValue(KEY_DSA_SEND_ON_CHANGE, false);
+        config.getFloatValue(Constants.KEY_BLOCKED_FIRE_PENALTY);
+        config.getFloatValue(Constants.KEY_BLOCKED_POLICE_PENALTY);
+        config.getFloatValue(Constants.KEY_UTIL_K);
+        config.getFloatValue(Constants.KEY_UTIL_ALPHA);
+
+        // Seeds are drawn sequentially so that results only depend on the global seed
+        List<Restart> restarts = new ArrayList<>(nRestarts);
+        for (int i=0; i<nRestarts; i++) {
+            restarts.add(new Restart(problem, neighborhood, config.getRandom().nextLong(), startTime,
+                    i == 0));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            for (Future<Restart> future : executor.invokeAll(restarts)) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            Logger.error("Parallel DSA restart failed", ex);
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Pick the best restart according to the assignment that will be reported
+        final boolean anytime = config.getBooleanValue(KEY_ANYTIME);
+        Restart best = null;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        double sum = 0, sumSquares = 0;
+        int iterations = 0, nRun = 0;
+        long nccc = 0, initTime = 0;
+        long nMessages = 0, bMessages = 0;
+        boolean ranOutOfTime = false;
+        StringBuilder buf = new StringBuilder();
+        String prefix = "";
+        for (Restart restart : restarts) {
+            if (restart.skipped) {
+                // Queued restarts that could not start before the deadline
+                ranOutOfTime = true;
+                continue;
+            }
+            nRun++;
+            final double utility = anytime ? restart.bestUtility : restart.finalUtility;
+            if (best == null || utility > (anytime ? best.bestUtility : best.finalUtility)) {
+                best = restart;
+            }
+            min = Math.min(min, utility);
+            max = Math.max(max, utility);
+            sum += utility;
+            sumSquares += utility * utility;
+            iterations += restart.iterations;
+            nccc += restart.nccc;
+            initTime = Math.max(initTime, restart.initTime);
+            nMessages += restart.nMessages;
+            bMessages += restart.bMessages;
+            ranOutOfTime = ranOutOfTime || restart.ranOutOfTime;
+            buf.append(prefix).append(utility);
+            prefix = ",";
+        }
+        final double mean = sum / nRun;
+        final double stddev = Math.sqrt(Math.max(0, sumSquares / nRun - mean * mean));
+        Logger.debug("{} of {} restarts done in {}ms. Utilities: min {}, mean {}, max {}.",
+                nRun, nRestarts, System.currentTimeMillis() - startTime, min, mean, max);
+
+        // Perform greedy improvement on the final and best assignments if time permits
+        Assignment finalGreedy = best.finalAssignment;
+        Assignment bestGreedy = best.bestAssignment;
+        double finalGreedyU = Double.NaN, bestGreedyU = Double.NaN;
+        if (!ranOutOfTime) {
+            finalGreedy = greedyImprovement(problem, best.finalAssignment);
+            finalGreedyU = getUtility(problem, finalGreedy);
+            bestGreedy = greedyImprovement(problem, best.bestAssignment);
+            bestGreedyU = getUtility(problem, bestGreedy);
+        }
+
+        // Report the same statistics as the other DCOP solvers (summed over all restarts, and
+        // with no messages other than the algorithm ones), plus those of the restarts
+        stats.report("init_time", initTime);
+        stats.report("iterations", iterations);
+        stats.report("NCCCs", nccc);
+        stats.report("MessageNum", nMessages);
+        stats.report("MessageBytes", bMessages);
+        stats.report("OtherNum", 0);
+        stats.report("OtherBytes", 0);
+        stats.report("final", best.finalUtility);
+        stats.report("best", best.bestUtility);
+        stats.report("final_greedy", finalGreedyU);
+        stats.report("best_greedy", bestGreedyU);
+        stats.report("restarts", nRun);
+        stats.report("threads", nThreads);
+        stats.report("restart_min", min);
+        stats.report("restart_mean", mean);
+        stats.report("restart_max", max);
+        stats.report("restart_stddev", stddev);
+        stats.report("utilities", buf.toString());
+
+        // Return the assignment depending on the configuration settings
+        final boolean greedy = config.getBooleanValue(KEY_GREEDY_CORRECTION);
+        if (anytime && greedy && !ranOutOfTime) {
+            return bestGreedy;
+        } else if (anytime && best.bestAssignment != null) {
+            return best.bestAssignment;
+        } else if (greedy && !ranOutOfTime) {
+            return finalGreedy;
+        }
+        return best.finalAssignment;
+    }
+
+    /**
+     * A single independent run of DSA.
+     */
+    private class Restart implements Callable<Restart> {
+        private final ProblemDefinition problem;
+        private final NeighborhoodIndex neighborhood;
+        private final Random random;
+        private final long startTime;
+        private final boolean mandatory;
+
+        private boolean skipped = false;
+        private int iterations = 0;
+        private long nccc = 0;
+        private long initTime = 0;
+        private long nMessages = 0;
+        private long bMessages = 0;
+        private boolean ranOutOfTime = false;
+        private Assignment finalAssignment;
+        private double finalUtility = Double.NEGATIVE_INFINITY;
+        private Assignment bestAssignment;
+        private double bestUtility = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Build a new restart.
+         *
+         * @param mandatory whether the restart must run even if the deadline has passed, so that
+         * there is always some assignment to report.
+         */
+        public Restart(ProblemDefinition problem, NeighborhoodIndex neighborhood, long seed,
+                long startTime, boolean mandatory)
+        {
+            this.problem = problem;
+            this.neighborhood = neighborhood;
+            this.random = new Random(seed);
+            this.startTime = startTime;
+            this.mandatory = mandatory;
+        }
+
+        @Override
+        public Restart call() {
+            // Restarts queued behind others may only get to run once the step is over
+            if (!mandatory && System.currentTimeMillis() - startTime >= maxTime) {
+                skipped = true;
+                return this;
+            }
+
+            final long initStart = System.currentTimeMillis();
+            List<DSAAbstractAgent> agents = new ArrayList<>();
+            initializeAgents(agents, problem.getFireAgents());
+            initializeAgents(agents, problem.getPoliceAgents());
+            initTime = System.currentTimeMillis() - initStart;
+
+            final int MAX_ITERATIONS = config.getIntValue(KEY_DCOP_ITERATIONS);
+            CommunicationLayer comLayer = new CommunicationLayer();
+            boolean done = false;
+            while (!done && iterations < MAX_ITERATIONS) {
+                finalAssignment = new Assignment();
+
+                for (DSAAbstractAgent agent : agents) {
+                    Collection<Message> messages = agent.sendMessages(comLayer);
+                    nMessages += messages.size();
+                    for (Message msg : messages) {
+                        bMessages += msg.getBytes();
+                    }
+                }
+
+                for (DSAAbstractAgent agent : agents) {
+                    agent.receiveMessages(comLayer.retrieveMessages(agent.getID()));
+                }
+
+                done = true;
+                long iterationNccc = 0;
+                for (DSAAbstractAgent agent : agents) {
+                    done = !agent.improveAssignment() && done;
+                    iterationNccc = Math.max(iterationNccc, agent.getConstraintChecks());
+                    finalAssignment.assign(agent.getID(), agent.getTarget());
+                }
+                nccc += iterationNccc;
+
+                finalUtility = getUtility(problem, finalAssignment);
+                if (finalUtility > bestUtility || bestAssignment == null) {
+                    bestUtility = finalUtility;
+                    bestAssignment = finalAssignment;
+                }
+                iterations++;
+
+                if (System.currentTimeMillis() - startTime >= maxTime) {
+                    ranOutOfTime = true;
+                    break;
+                }
+            }
+
+            return this;
+        }
+
+        private void initializeAgents(List<DSAAbstractAgent> agents, List<EntityID> ids) {
+            for (EntityID id : ids) {
+                DSAAbstractAgent agent = buildAgent(
+                        problem.getWorld().getEntity(id).getStandardURN(), neighborhood);
+                agent.setRandom(random);
+                agent.initialize(config, id, problem);
+                agents.add(agent);
+            }
+        }
+    }
+
+}
@@ -4,23 +4,37 @@ import RSLBench.Algorithms.DSA.scoring.ScoringFunction;
 import RSLBench.Assignment.Assignment;
 import RSLBench.Helpers.Utility.ProblemDefinition;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import rescuecore2.worldmodel.EntityID;
 
 /**
  * Computes the utility for an agent to pick a specific target given the targets
  * chosen by the other agents.
+ * <p/>
+ * Counts and assignments are stored in plain arrays indexed by the dense
+ * indices of the {@link ProblemDefinition}. Each slot carries the epoch in
+ * which it was last written, so that {@link #resetAssignments()} just has to
+ * start a new epoch instead of clearing the arrays.
  */
 public class TargetScores {
-    private HashMap<EntityID, Integer> nAssignedAgents;
-    private HashMap<EntityID, EntityID> assignments;
     private ScoringFunction scoringFunction;
     private ProblemDefinition problem;
     private EntityID agent;
 
+    private int epoch = 1;
+
+    private final int[] fireCounts;
+    private final int[] fireEpochs;
+    private final int[] blockadeCounts;
+    private final int[] blockadeEpochs;
+
+    private final EntityID[] fireAgentAssignments;
+    private final int[] fireAgentEpochs;
+    private final EntityID[] policeAgentAssignments;
+    private final int[] policeAgentEpochs;
+
     /**
      * Build a new score tracker.
      * @param agent agent that is evaluating different target options.
@@ -29,8 +43,20 @@ public class TargetScores {
     public TargetScores(EntityID agent, ProblemDefinition problem) {
         this.agent = agent;
         this.problem = problem;
-        nAssignedAgents = new HashMap<>();
-        assignments = new HashMap<>();
+
+        final int nFires = problem.getNumFires();
+        fireCounts = new int[nFires];
+        fireEpochs = new int[nFires];
+        final int nBlockades = problem.getBlockades().size();
+        blockadeCounts = new int[nBlockades];
+        blockadeEpochs = new int[nBlockades];
+
+        final int nFireAgents = problem.getNumFireAgents();
+        fireAgentAssignments = new EntityID[nFireAgents];
+        fireAgentEpochs = new int[nFireAgents];
+        final int nPoliceAgents = problem.getPoliceAgents().size();
+        policeAgentAssignments = new EntityID[nPoliceAgents];
+        policeAgentEpochs = new int[nPoliceAgents];
     }
 
     /**
@@ -55,24 +81,98 @@ public class TargetScores {
      * Get the target chosen by this agent.
      *
      * @param agent agent whose assignment to get
-     * @return assignment of that agent
+     * @return assignment of that agent, or <em>null</em> if it has not been tracked.
      */
     public EntityID getAssignment(EntityID agent) {
-        return assignments.get(agent);
+        int idx = problem.getFireAgentIndex(agent);
+        if (idx >= 0) {
+            return getFireAgentAssignment(idx);
+        }
+        idx = problem.getPoliceAgentIndex(agent);
+        if (idx >= 0) {
+            return getPoliceAgentAssignment(idx);
+        }
+        return null;
     }
 
     /**
-     * Increases the count of agents that have chosen the specified target.
-     * @param target target chosen by some other agent.
+     * Get the target chosen by the fire agent at the given index.
+     *
+     * @param fireAgent index of the fire agent whose assignment to get
+     * @return assignment of that agent, or <em>null</em> if it has not been tracked.
+     */
+    public EntityID getFireAgentAssignment(int fireAgent) {
+        return fireAgentEpochs[fireAgent] == epoch ? fireAgentAssignments[fireAgent] : null;
+    }
+
+    /**
+     * Get the target chosen by the police agent at the given index.
+     *
+     * @param policeAgent index of the police agent whose assignment to get
+     * @return assignment of that agent, or <em>null</em> if it has not been tracked.
+     */
+    public EntityID getPoliceAgentAssignment(int policeAgent) {
+        return policeAgentEpochs[policeAgent] == epoch ? policeAgentAssignments[policeAgent] : null;
+    }
+
+    /**
+     * Sets the target chosen by some other agent, increasing the count of agents that have
+     * chosen that target.
+     * <p/>
+     * If the agent had already been tracked since the last reset, its previous choice is
+     * discounted first. This allows keeping a persistent view of the neighbors' choices that
+     * is updated incrementally.
+     *
+     * @param agent agent that has chosen the target.
+     * @param target target chosen by that agent.
      */
     public void track(EntityID agent, EntityID target) {
-        assignments.put(agent, target);
-        Integer count = nAssignedAgents.get(target);
-        if (count == null) {
-            nAssignedAgents.put(target, 1);
+        int idx = problem.getFireAgentIndex(agent);
+        if (idx >= 0) {
+            untrack(getFireAgentAssignment(idx));
+            fireAgentAssignments[idx] = target;
+            fireAgentEpochs[idx] = epoch;
         } else {
-            nAssignedAgents.put(target, count+1);
+            idx = problem.getPoliceAgentIndex(agent);
+            if (idx >= 0) {
+                untrack(getPoliceAgentAssignment(idx));
+                policeAgentAssignments[idx] = target;
+                policeAgentEpochs[idx] = epoch;
+            }
+        }
+
+        idx = problem.getFireIndex(target);
+        if (idx >= 0) {
+            update(fireCounts, fireEpochs, idx, 1);
+            return;
+        }
+        idx = problem.getBlockadeIndex(target);
+        if (idx >= 0) {
+            update(blockadeCounts, blockadeEpochs, idx, 1);
+        }
+    }
+
+    private void untrack(EntityID target) {
+        if (target == null) {
+            return;
+        }
+        int idx = problem.getFireIndex(target);
+        if (idx >= 0) {
+            update(fireCounts, fireEpochs, idx, -1);
+            return;
+        }
+        idx = problem.getBlockadeIndex(target);
+        if (idx >= 0) {
+            update(blockadeCounts, blockadeEpochs, idx, -1);
+        }
+    }
+
+    private void update(int[] counts, int[] epochs, int idx, int delta) {
+        if (epochs[idx] != epoch) {
+            epochs[idx] = epoch;
+            counts[idx] = 0;
         }
+        counts[idx] += delta;
     }
 
     /**
@@ -82,11 +182,35 @@ public class TargetScores {
      * @return number of agents assigned to this target
      */
     public int getAgentCount(EntityID target) {
-        int nAgents = 0;
-        if (nAssignedAgents.containsKey(target)) {
-            nAgents = nAssignedAgents.get(target);
+        int idx = problem.getFireIndex(target);
+        if (idx >= 0) {
+            return getFireAgentCount(idx);
+        }
+        idx = problem.getBlockadeIndex(target);
+        if (idx >= 0) {
+            return getBlockadeAgentCount(idx);
         }
-        return nAgents;
+        return 0;
+    }
+
+    /**
+     * Get the number of agents assigned to the fire at the given index.
+     *
+     * @param fire index of the fire to consider
+     * @return number of agents assigned to this fire
+     */
+    public int getFireAgentCount(int fire) {
+        return fireEpochs[fire] == epoch ? fireCounts[fire] : 0;
+    }
+
+    /**
+     * Get the number of agents assigned to the blockade at the given index.
+     *
+     * @param blockade index of the blockade to consider
+     * @return number of agents assigned to this blockade
+     */
+    public int getBlockadeAgentCount(int blockade) {
+        return blockadeEpochs[blockade] == epoch ? blockadeCounts[blockade] : 0;
     }
 
     /**
@@ -95,7 +219,7 @@ public class TargetScores {
      *
      * This function should only be used <strong>after</strong> all the other
      * agents' choices have been set through the
-     * {@link #increaseAgentCount(EntityID)} method.
+     * {@link #track(EntityID, EntityID)} method.
      *
      * @param target target to evaluate.
      * @return utility for this agent to pick the given target.
@@ -128,13 +252,36 @@ public class TargetScores {
      * Resets this object (clears all choices of the neighboring agents).
      */
     public void resetAssignments() {
-        nAssignedAgents.clear();
-        assignments.clear();
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Extremely unlikely, but stale stamps must never match a new epoch
+            Arrays.fill(fireEpochs, 0);
+            Arrays.fill(blockadeEpochs, 0);
+            Arrays.fill(fireAgentEpochs, 0);
+            Arrays.fill(policeAgentEpochs, 0);
+            epoch = 1;
+        }
     }
 
     @Override
     public String toString() {
-        return nAssignedAgents.toString();
+        StringBuilder buf = new StringBuilder("{");
+        String prefix = "";
+        for (int i=0; i<fireCounts.length; i++) {
+            final int count = getFireAgentCount(i);
+            if (count > 0) {
+                buf.append(prefix).append(problem.getFires().get(i)).append("=").append(count);
+                prefix = ", ";
+            }
+        }
+        for (int i=0; i<blockadeCounts.length; i++) {
+            final int count = getBlockadeAgentCount(i);
+            if (count > 0) {
+                buf.append(prefix).append(problem.getBlockades().get(i)).append("=").append(count);
+                prefix = ", ";
+            }
+        }
+        return buf.append("}").toString();
     }
 
-}
\ No newline at end of file
+}
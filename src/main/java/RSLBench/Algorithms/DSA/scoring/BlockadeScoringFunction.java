@@ -17,11 +17,13 @@ public class BlockadeScoringFunction extends AbstractScoringFunction {
 
     @Override
     public double score(EntityID agent, EntityID target, TargetScores scores, ProblemDefinition problem) {
-        final int nAgents = scores.getAgentCount(target);
+        final int i = problem.getPoliceAgentIndex(agent);
+        final int j = problem.getBlockadeIndex(target);
+        final int nAgents = scores.getBlockadeAgentCount(j);
         CC();
 
         // The cost of picking this blockade is given by the unary utility
-        double utility = problem.getPoliceUtility(agent, target);
+        double utility = problem.getPoliceUtility(i, j);
         if (problem.isPoliceAgentBlocked(agent, target)) {
             utility -= problem.getConfig().getFloatValue(Constants.KEY_BLOCKED_POLICE_PENALTY);
         }
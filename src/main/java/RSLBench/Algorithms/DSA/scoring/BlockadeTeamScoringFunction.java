@@ -9,7 +9,6 @@ import RSLBench.Constants;
 import RSLBench.Helpers.Utility.ProblemDefinition;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import rescuecore2.misc.Pair;
 import rescuecore2.worldmodel.EntityID;
 
 /**
@@ -21,12 +20,14 @@ public class BlockadeTeamScoringFunction extends AbstractScoringFunction {
 
     @Override
     public double score(EntityID agent, EntityID target, TargetScores scores, ProblemDefinition problem) {
-        final int nAgents = scores.getAgentCount(target);
+        final int i = problem.getPoliceAgentIndex(agent);
+        final int j = problem.getBlockadeIndex(target);
+        final int nAgents = scores.getBlockadeAgentCount(j);
         CC();
 
         // The cost of picking this blockade is given by the unary utility
-        double utility = problem.getPoliceUtility(agent, target);
-        if (problem.isPoliceAgentBlocked(agent, target)) {
+        double utility = problem.getPoliceUtility(i, j);
+        if (problem.getPoliceAgentBlocker(i, j) != ProblemDefinition.NOT_BLOCKED) {
             utility -= problem.getConfig().getFloatValue(Constants.KEY_BLOCKED_POLICE_PENALTY);
         }
         CC();
@@ -36,13 +37,14 @@ public class BlockadeTeamScoringFunction extends AbstractScoringFunction {
             utility += problem.getConfig().getFloatValue(Constants.KEY_POLICE_ETA);
 
             // ... plus some possible penalty removal incentives if fire agents are blocked by this blockade
-            for (Pair<EntityID, EntityID> info : problem.getFireAgentsBlockedByBlockade(target)) {
-                final EntityID fireAgent = info.first();
-                final EntityID fire = info.second();
+            final int nBlocked = problem.getNumBlockedPairs(j);
+            for (int k=0; k<nBlocked; k++) {
+                final int fireAgent = problem.getBlockedFireAgent(j, k);
+                final EntityID fire = problem.getFires().get(problem.getBlockedFire(j, k));
 
-                if (scores.getAssignment(fireAgent).equals(fire)) {
+                if (fire.equals(scores.getFireAgentAssignment(fireAgent))) {
                     Logger.trace("Blockade {} is more attractive for {} because fire agent {} is blocked by it.",
-                            target, agent, fireAgent);
+                            target, agent, problem.getFireAgents().get(fireAgent));
                     utility += problem.getConfig().getFloatValue(Constants.KEY_BLOCKED_FIRE_PENALTY);
                 }
                 CC();
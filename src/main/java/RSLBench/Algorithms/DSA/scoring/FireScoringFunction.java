@@ -17,16 +17,18 @@ public class FireScoringFunction extends AbstractScoringFunction {
 
     @Override
     public double score(EntityID agent, EntityID target, TargetScores scores, ProblemDefinition problem) {
-        final int nAgents = scores.getAgentCount(target);
+        final int i = problem.getFireAgentIndex(agent);
+        final int j = problem.getFireIndex(target);
+        final int nAgents = scores.getFireAgentCount(j);
         CC();
 
         // Compute the difference in penalty between going to that fire and not going there
-        final double penalty = problem.getUtilityPenalty(target, nAgents+1)
-                - problem.getUtilityPenalty(target, nAgents);
+        final double penalty = problem.getUtilityPenalty(j, nAgents+1)
+                - problem.getUtilityPenalty(j, nAgents);
         CC();CC();
 
         // Compute the individual utility of going to that fire
-        double utility = problem.getFireUtility(agent, target);
+        double utility = problem.getFireUtility(i, j);
 
         // Subtract the corresponding penalty if that fire is blocked
         if (problem.isFireAgentBlocked(agent, target)) {
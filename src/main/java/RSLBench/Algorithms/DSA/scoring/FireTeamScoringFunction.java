@@ -20,23 +20,25 @@ public class FireTeamScoringFunction extends AbstractScoringFunction {
 
     @Override
     public double score(EntityID agent, EntityID target, TargetScores scores, ProblemDefinition problem) {
-        final int nAgents = scores.getAgentCount(target);
+        final int i = problem.getFireAgentIndex(agent);
+        final int j = problem.getFireIndex(target);
+        final int nAgents = scores.getFireAgentCount(j);
         CC();
 
         // Compute the difference in penalty between going to that fire and not going there
-        final double penalty = problem.getUtilityPenalty(target, nAgents+1)
-                - problem.getUtilityPenalty(target, nAgents);
+        final double penalty = problem.getUtilityPenalty(j, nAgents+1)
+                - problem.getUtilityPenalty(j, nAgents);
         CC();CC();
 
         // Compute the individual utility of going to that fire
-        double utility = problem.getFireUtility(agent, target);
+        double utility = problem.getFireUtility(i, j);
         CC();
 
         // Subtract the corresponding penalty if that fire is blocked *and* the blockade is not
         // being attended by any police agent
         if (problem.isFireAgentBlocked(agent, target)) {
             EntityID blockade = problem.getBlockadeBlockingFireAgent(agent, target);
-            final int nPolice = scores.getAgentCount(blockade);
+            final int nPolice = scores.getBlockadeAgentCount(problem.getBlockadeIndex(blockade));
             if (nPolice == 0) {
                 utility -= problem.getConfig().getFloatValue(Constants.KEY_BLOCKED_FIRE_PENALTY);
             } else {
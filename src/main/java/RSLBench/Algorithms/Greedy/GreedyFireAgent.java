@@ -23,14 +23,19 @@ public class GreedyFireAgent extends DefaultDCOPAgent {
         final ProblemDefinition problem = getProblem();
         final EntityID id = getID();
 
+        final int i = problem.getFireAgentIndex(id);
         double best = Double.NEGATIVE_INFINITY;
-        for (EntityID target : problem.getFireAgentNeighbors(getID())) {
-            double value = problem.getFireUtility(id, target);
+        int bestTarget = -1;
+        for (int j : problem.getFireAgentNeighborIndices(i)) {
+            double value = problem.getFireUtility(i, j);
             if (value > best) {
                 best = value;
-                setTarget(target);
+                bestTarget = j;
             }
         }
+        if (bestTarget >= 0) {
+            setTarget(problem.getFires().get(bestTarget));
+        }
 
         // This can happen if we have no neighbors
         if (getTarget() == null) {
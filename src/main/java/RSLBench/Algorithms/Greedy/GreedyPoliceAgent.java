@@ -24,13 +24,14 @@ public class GreedyPoliceAgent extends DefaultDCOPAgent {
         final ProblemDefinition problem = getProblem();
         final EntityID id = getID();
 
+        final int i = problem.getPoliceAgentIndex(id);
         double best = Double.NEGATIVE_INFINITY;
         setTarget(Assignment.UNKNOWN_TARGET_ID);
-        for (EntityID target : problem.getPoliceAgentNeighbors(getID())) {
-            double value = problem.getPoliceUtility(id, target);
+        for (int j : problem.getPoliceAgentNeighborIndices(i)) {
+            double value = problem.getPoliceUtility(i, j);
             if (value > best) {
                 best = value;
-                setTarget(target);
+                setTarget(problem.getBlockades().get(j));
             }
         }
 
@@ -77,6 +77,7 @@ public class MSAgent extends AbstractDCOPAgent {
         }
 
         // Build the potential CostFunction and set the values
+        final int fireIdx = problem.getFireIndex(fire);
         CostFunction f = cfFactory.buildCostFunction(variables, 0);
         for (MasterIterator it = f.masterIterator(); it.hasNext();) {
             final long idx = it.next();
@@ -89,7 +90,7 @@ public class MSAgent extends AbstractDCOPAgent {
                 }
             }
 
-            f.setValue(idx, -problem.getUtilityPenalty(fire, nActiveCandidates));
+            f.setValue(idx, -problem.getUtilityPenalty(fireIdx, nActiveCandidates));
         }
 
         return f;
@@ -9,15 +9,18 @@ import es.csic.iiia.ms.functions.CostFunction;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import rescuecore2.config.Config;
-import rescuecore2.misc.Pair;
 
 /**
  * Communication channel for a Max-Sum agent.
+ * <p/>
+ * The values of the last message sent through each (sender, recipient) edge
+ * are kept in a per-edge buffer that is allocated the first time the edge is
+ * used and reused afterwards, so that damping and the convergence check are
+ * performed in place.
  *
  * @author Marc Pujol <mpujol@iiia.csic.es>
  */
@@ -32,19 +35,31 @@ public class MSCommunicator implements Communicator<Identity> {
 
     private boolean converged;
 
-    private List<MSMessage> outgoingMessages;
-    private Map<Pair<Identity, Identity>, CostFunction> oldMessages;
+    private ArrayList<MSMessage> outgoingMessages;
+    private ArrayList<MSMessage> flushedMessages;
+    private final Map<Identity, Map<Identity, double[]>> oldMessages;
 
     public MSCommunicator(Config config) {
         DAMPING_FACTOR = config.getFloatValue(MaxSum.KEY_MAXSUM_DAMPING);
         outgoingMessages = new ArrayList<>();
+        flushedMessages = new ArrayList<>();
         oldMessages = new HashMap<>();
         converged = true;
     }
 
+    /**
+     * Returns the messages sent since the last flush.
+     * <p/>
+     * The returned collection is recycled by the communicator, so it is only
+     * valid until the next call to this method.
+     *
+     * @return messages sent since the last flush.
+     */
     public Collection<MSMessage> flushMessages() {
-        Collection<MSMessage> result = outgoingMessages;
-        outgoingMessages = new ArrayList<>();
+        ArrayList<MSMessage> result = outgoingMessages;
+        outgoingMessages = flushedMessages;
+        outgoingMessages.clear();
+        flushedMessages = result;
         converged = true;
         return result;
     }
@@ -54,26 +69,41 @@ public class MSCommunicator implements Communicator<Identity> {
         Logger.trace("Message from {} to {} : {}", new Object[]{from, to, message});
         outgoingMessages.add(new MSMessage(message, from, to));
 
-        // Convergence check
+        // Fetch the buffer holding the previous message through this edge
+        Map<Identity, double[]> senderBuffers = oldMessages.get(from);
+        if (senderBuffers == null) {
+            senderBuffers = new HashMap<>();
+            oldMessages.put(from, senderBuffers);
+        }
+        double[] oldValues = senderBuffers.get(to);
+        final double[] values = message.getValues();
+
+        // First message through this edge: just remember it
+        if (oldValues == null || oldValues.length != values.length) {
+            oldValues = new double[values.length];
+            System.arraycopy(values, 0, oldValues, 0, values.length);
+            senderBuffers.put(to, oldValues);
+            converged = false;
+            return;
+        }
+
+        // Apply damping and check for convergence in a single pass.
         // The algorithm has converged unless there is at least one message
         // different from the previous iteration
-        Pair<Identity, Identity> sr = new Pair<>(from, to);
-        CostFunction oldMessage = oldMessages.get(sr);
-
-        // Apply damping
-        if (oldMessage != null) {
-            double[] oldValues = oldMessage.getValues();
-            double[] values = message.getValues();
-            for (int i=0; i<values.length; i++) {
-                values[i] = oldValues[i] * DAMPING_FACTOR + values[i] * (1 - DAMPING_FACTOR);
+        boolean changed = false;
+        for (int i=0; i<values.length; i++) {
+            final double value = oldValues[i] * DAMPING_FACTOR + values[i] * (1 - DAMPING_FACTOR);
+            if (Math.abs(value - oldValues[i]) > EPSILON) {
+                changed = true;
             }
-            message.setValues(values);
+            oldValues[i] = value;
+            values[i] = value;
         }
+        message.setValues(values);
 
-        if (oldMessage == null || !oldMessage.equals(message, EPSILON)) {
+        if (changed) {
             converged = false;
         }
-        oldMessages.put(sr, message);
     }
 
     /**
@@ -8,8 +8,6 @@ import RSLBench.Helpers.Stats;
 import RSLBench.Constants;
 import RSLBench.Helpers.Utility.ProblemDefinition;
 import RSLBench.Search.SearchFactory;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -92,6 +90,12 @@ public abstract class AbstractSolver implements Solver
         keys.add(SearchFactory.KEY_SEARCH_CLASS);
         keys.add(Constants.KEY_PROBLEM_PRUNE);
         keys.add(Constants.KEY_PROBLEM_MAXNEIGHBORS);
+        keys.add(Constants.KEY_PROBLEM_THREADS);
+        keys.add(Constants.KEY_PROBLEM_INCREMENTAL);
+        keys.add(Constants.KEY_PROBLEM_BLOCKADE_TREE);
+        keys.add(Constants.KEY_PROBLEM_SPARSE);
+        keys.add(Constants.KEY_PROBLEM_SPARSE_CANDIDATES);
+        keys.add(Constants.KEY_PROBLEM_STORAGE);
         keys.add(Constants.KEY_INTERTEAM_COORDINATION);
         keys.add(Constants.KEY_BLOCKED_FIRE_PENALTY);
         keys.add(Constants.KEY_BLOCKED_POLICE_PENALTY);
@@ -131,6 +135,15 @@ public abstract class AbstractSolver implements Solver
         }
         stats.report("nOnceBurned", nOnceBurned);
         stats.report("nBurning", nBurning);
+        stats.report("utilities_recomputed", problem.getRecomputedCells());
+        stats.report("utilities_reused", problem.getReusedCells());
+        stats.report("blocked_time", problem.getBlockedPathsTime());
+        stats.report("utilities_bytes", problem.getUtilityBytes());
+        stats.report("paths_hits", problem.getPathsHits());
+        stats.report("paths_misses", problem.getPathsMisses());
+        stats.report("paths_evictions", problem.getPathsEvictions());
+        stats.report("paths_cache_bytes", problem.getPathsCacheBytes());
+        stats.report("paths_lookup_time", problem.getPathsLookupTime());
 
         final long start = System.currentTimeMillis();
         Assignment solution = compute(problem);
@@ -167,51 +180,57 @@ public abstract class AbstractSolver implements Solver
 
         double utility = 0;
 
-        HashSet<EntityID> blockadesAttended = new HashSet<>();
+        boolean[] blockadesAttended = new boolean[problem.getBlockades().size()];
         // Add individual police utilities
-        for (EntityID policeAgent : problem.getPoliceAgents()) {
+        final List<EntityID> policeAgents = problem.getPoliceAgents();
+        for (int i=0; i<policeAgents.size(); i++) {
+            final EntityID policeAgent = policeAgents.get(i);
             EntityID target = solution.getAssignment(policeAgent);
             if (target == Assignment.UNKNOWN_TARGET_ID) {
                 continue;
             }
 
-            utility += problem.getPoliceUtility(policeAgent, target);
-            if (problem.isPoliceAgentBlocked(policeAgent, target)) {
+            final int j = problem.getBlockadeIndex(target);
+            utility += problem.getPoliceUtility(i, j);
+            if (problem.getPoliceAgentBlocker(i, j) != ProblemDefinition.NOT_BLOCKED) {
                 utility -= POLICE_PENALTY;
             }
 
             // Track assignments and violations
-            if (blockadesAttended.contains(target)) {
+            if (blockadesAttended[j]) {
                 return Double.NEGATIVE_INFINITY;
             }
-            blockadesAttended.add(target);
+            blockadesAttended[j] = true;
         }
 
         // Track individual utilities and count how many firefighters have chosen each fire
-        HashMap<EntityID, Integer> nAgentsPerTarget = new HashMap<>();
-        for (EntityID fireAgent : problem.getFireAgents()) {
+        int[] nAgentsPerTarget = new int[problem.getNumFires()];
+        final List<EntityID> fireAgents = problem.getFireAgents();
+        for (int i=0; i<fireAgents.size(); i++) {
+            final EntityID fireAgent = fireAgents.get(i);
             EntityID fire = solution.getAssignment(fireAgent);
+            final int j = problem.getFireIndex(fire);
 
             // Individual utility
-            utility += problem.getFireUtility(fireAgent, fire);
+            utility += problem.getFireUtility(i, j);
 
             // Penalized if the relevant blockade is not attended
-            if (problem.isFireAgentBlocked(fireAgent, fire)) {
-                EntityID blockade = problem.getBlockadeBlockingFireAgent(fireAgent, fire);
-                if (!INTERTEAM || !blockadesAttended.contains(blockade)) {
+            final int blockade = problem.getFireAgentBlocker(i, j);
+            if (blockade != ProblemDefinition.NOT_BLOCKED) {
+                if (!INTERTEAM || !blockadesAttended[blockade]) {
                     utility -= FIRE_PENALTY;
                 }
             }
 
             // Add 1 to the target count
-            Integer nAgents = nAgentsPerTarget.get(fire);
-            nAgentsPerTarget.put(fire, nAgents == null ? 1 : nAgents+1);
+            nAgentsPerTarget[j]++;
         }
 
         // Finally penalize overassignments of agents to fires
-        for (EntityID target : nAgentsPerTarget.keySet()) {
-            int assigned = nAgentsPerTarget.get(target);
-            utility -= problem.getUtilityPenalty(target, assigned);
+        for (int j=0; j<nAgentsPerTarget.length; j++) {
+            if (nAgentsPerTarget[j] > 0) {
+                utility -= problem.getUtilityPenalty(j, nAgentsPerTarget[j]);
+            }
         }
 
         return utility;
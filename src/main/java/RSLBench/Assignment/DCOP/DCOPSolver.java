@@ -225,8 +225,10 @@ public abstract class DCOPSolver extends AbstractSolver {
         final long startTime = System.currentTimeMillis();
         initializeAgentType(problem, problem.getFireAgents());
         initializeAgentType(problem, problem.getPoliceAgents());
+        final long initTime = System.currentTimeMillis() - startTime;
         Logger.debug(Markers.BLUE, "Initialized {} {} agents in {}ms.",
-                agents.size(), getIdentifier(), System.currentTimeMillis() - startTime);
+                agents.size(), getIdentifier(), initTime);
+        stats.report("init_time", initTime);
     }
 
     private void initializeAgentType(ProblemDefinition problem, List<EntityID> ids) {
@@ -20,6 +20,7 @@ import RSLBench.Helpers.Logging.Markers;
 import RSLBench.Helpers.PathCache.PathDB;
 import RSLBench.Helpers.Utility.UtilityFactory;
 import RSLBench.Helpers.Utility.ProblemDefinition;
+import RSLBench.Helpers.Utility.WorldChanges;
 import java.util.Iterator;
 import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
@@ -49,6 +50,7 @@ public class CenterAgent extends StandardAgent<Building> {
     private ArrayList<EntityID> fireAgentsIDs = new ArrayList<>();
     private ArrayList<EntityID> policeAgentsIDs = new ArrayList<>();
     private Assignment lastAssignment = new Assignment();
+    private ProblemDefinition lastProblem = null;
     private List<PlatoonFireAgent> fireAgents;
     private List<PlatoonPoliceAgent> policeAgents;
     private List<Blockade> blockades = new ArrayList<>();
@@ -255,8 +257,15 @@ public class CenterAgent extends StandardAgent<Building> {
 
         // Build the problem
         ArrayList<EntityID> fires = new ArrayList<>(burning);
-        ProblemDefinition problem = new ProblemDefinition(config, fireAgentsIDs,
-                fires, policeAgentsIDs, blockadeIDs, lastAssignment, model);
+        ProblemDefinition problem;
+        if (lastProblem != null && config.getBooleanValue(Constants.KEY_PROBLEM_INCREMENTAL, false)) {
+            problem = new ProblemDefinition(config, fireAgentsIDs, fires, policeAgentsIDs,
+                    blockadeIDs, lastAssignment, model, lastProblem, new WorldChanges(changed, model));
+        } else {
+            problem = new ProblemDefinition(config, fireAgentsIDs,
+                    fires, policeAgentsIDs, blockadeIDs, lastAssignment, model);
+        }
+        lastProblem = problem;
         nextTime = System.currentTimeMillis();
         Logger.debug("Build problem took {} millis", nextTime - lastTime);
         lastTime = nextTime;
@@ -70,9 +70,27 @@ public class Constants {
     /** Whether to prune the problem or not */
     public static final String KEY_PROBLEM_PRUNE = "problem.prune";
 
-    /** The maximum number of neighbours of an agent or fire in the pruned problem */
+    /** The maximum number of neighbours of an agent or target in the pruned problem */
     public static final String KEY_PROBLEM_MAXNEIGHBORS = "problem.max_neighbors";
 
+    /** Number of threads used to build the problem's utilities (0 to use all cores) */
+    public static final String KEY_PROBLEM_THREADS = "problem.threads";
+
+    /** Whether to reuse the unchanged parts of the previous step's problem */
+    public static final String KEY_PROBLEM_INCREMENTAL = "problem.incremental";
+
+    /** Whether to store only the utilities of candidate edges when pruning the problem */
+    public static final String KEY_PROBLEM_SPARSE = "problem.sparse";
+
+    /** Number of closest fires considered as candidates of each agent in sparse mode */
+    public static final String KEY_PROBLEM_SPARSE_CANDIDATES = "problem.sparse_candidates";
+
+    /** How to store the utility matrices: rows, double, float, direct_double or direct_float */
+    public static final String KEY_PROBLEM_STORAGE = "problem.storage";
+
+    /** Whether to compute blocked paths with one shortest path tree per agent instead of per-target searches */
+    public static final String KEY_PROBLEM_BLOCKADE_TREE = "problem.blockade_tree";
+
     /** Config key to the results path */
     public static final String KEY_RESULTS_PATH = "results.path";
 
@@ -4,11 +4,13 @@
  */
 package RSLBench.Helpers;
 
+import rescuecore2.misc.Pair;
 import rescuecore2.misc.geometry.GeometryTools2D;
 import rescuecore2.misc.geometry.Line2D;
 import rescuecore2.misc.geometry.Point2D;
 import rescuecore2.standard.entities.Blockade;
 import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardEntity;
 import rescuecore2.standard.entities.StandardWorldModel;
 import rescuecore2.worldmodel.EntityID;
 
@@ -34,8 +36,47 @@ public class Distance {
         return model.getDistance(agent, position2);
     }
 
+    /**
+     * Location of an entity, resolved as in {@link StandardWorldModel#getDistance(EntityID, EntityID)}.
+     *
+     * @return location of the entity, or <em>null</em> if it is unknown.
+     */
+    public static Pair<Integer, Integer> getLocation(EntityID id, StandardWorldModel model) {
+        StandardEntity entity = model.getEntity(id);
+        return entity == null ? null : entity.getLocation(model);
+    }
+
+    /**
+     * Distance from an already known location to the given entity, computed as in
+     * {@link StandardWorldModel#getDistance(EntityID, EntityID)}.
+     */
+    public static double locationToEntity(Pair<Integer, Integer> location, EntityID target, StandardWorldModel model) {
+        Pair<Integer, Integer> targetLocation = getLocation(target, model);
+        if (location == null || targetLocation == null) {
+            return -1;
+        }
+        final double dx = location.first() - targetLocation.first();
+        final double dy = location.second() - targetLocation.second();
+        return (int)Math.hypot(dx, dy);
+    }
+
+    /**
+     * Same as {@link #humanToBlockade(EntityID, EntityID, StandardWorldModel, double)}, for an
+     * agent whose location has already been retrieved.
+     */
+    public static double locationToBlockade(Pair<Integer, Integer> location, EntityID target, StandardWorldModel model, double threshold) {
+        Blockade blockade = (Blockade)model.getEntity(target);
+        if (inRange(new Point2D(location.first(), location.second()), blockade, threshold)) {
+            return 0;
+        }
+        return locationToEntity(location, blockade.getPosition(), model);
+    }
+
     private static boolean inRange(Human human, Blockade target, double range) {
-        Point2D agentLocation = new Point2D(human.getX(), human.getY());
+        return inRange(new Point2D(human.getX(), human.getY()), target, range);
+    }
+
+    private static boolean inRange(Point2D agentLocation, Blockade target, double range) {
         for (Line2D line : GeometryTools2D.pointsToLines(GeometryTools2D.vertexArrayToPoints(target.getApexes()), true)) {
             Point2D closest = GeometryTools2D.getClosestPointOnSegment(line, agentLocation);
             double distance = GeometryTools2D.getDistance(agentLocation, closest);
@@ -0,0 +1,586 @@
+package RSLBench.Helpers.PathCache;
+
+import RSLBench.Search.IndexedHeap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Contraction hierarchy of the areas of a map, used as a shortest path oracle.
+ * <p/>
+ * Areas are contracted one at a time (in order of edge difference), adding
+ * shortcut edges between their remaining neighbors whenever no other path of
+ * the same length exists. Queries run a bidirectional Dijkstra search that
+ * only follows edges towards areas contracted later, which settles very few
+ * areas, and shortcuts are then unpacked into the original areas.
+ * <p/>
+ * Edge costs are the same as those of {@link ShortestPathTrees}, and the graph
+ * is treated as undirected. Only the upward edges (with their lengths and the
+ * contracted area they skip, if any) are kept, and stored in a file with the
+ * map fingerprint and search class, like the shortest path trees.
+ */
+public class ContractionHierarchy {
+    private static final Logger Logger = LogManager.getLogger(ContractionHierarchy.class);
+
+    private static final int MAGIC = 0x43483031; // "CH01"
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+
+    /** Maximum number of areas settled by each witness search while contracting */
+    private static final int WITNESS_LIMIT = 500;
+
+    private final int[] areaIds;
+    private final TIntIntHashMap areaIdx;
+    private final int[] rank;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] middles;
+
+    private final ThreadLocal<Query> queries = new ThreadLocal<Query>() {
+        @Override
+        protected Query initialValue() {
+            return new Query(areaIds.length);
+        }
+    };
+
+    private ContractionHierarchy(int[] areaIds, int[] rank, int[] offsets, int[] targets,
+            int[] weights, int[] middles) {
+        this.areaIds = areaIds;
+        this.rank = rank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+        areaIdx = ShortestPathTrees.buildIndex(areaIds);
+    }
+
+    /**
+     * Get the length of the shortest path between two areas.
+     *
+     * @param from origin of the path.
+     * @param to destination of the path.
+     * @return length of the path, or -1 if there is no such path.
+     */
+    public long getDistance(EntityID from, EntityID to) {
+        final int s = areaIdx.get(from.getValue());
+        final int t = areaIdx.get(to.getValue());
+        if (s < 0 || t < 0) {
+            return -1;
+        }
+        Query query = queries.get();
+        return query.run(s, t) == NONE ? -1 : query.best;
+    }
+
+    /**
+     * Get the shortest path between two areas.
+     *
+     * @param from origin of the path.
+     * @param to destination of the path.
+     * @return ids of the areas in the path, including both the origin and the destination, or
+     * <em>null</em> if there is no such path.
+     */
+    public int[] getPath(EntityID from, EntityID to) {
+        final int s = areaIdx.get(from.getValue());
+        final int t = areaIdx.get(to.getValue());
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        Query query = queries.get();
+        final int meeting = query.run(s, t);
+        if (meeting == NONE) {
+            return null;
+        }
+
+        // Upward path from the origin to the meeting area, and downward from there to the destination
+        int[] up = new int[16];
+        int nUp = 0;
+        for (int current = meeting; current != NONE; current = query.forwardParents[current]) {
+            if (nUp == up.length) {
+                up = Arrays.copyOf(up, nUp * 2);
+            }
+            up[nUp++] = current;
+        }
+
+        Path path = new Path();
+        path.add(areaIds[s]);
+        for (int i = nUp-1; i > 0; i--) {
+            unpack(up[i], up[i-1], path);
+        }
+        for (int current = meeting; query.backwardParents[current] != NONE;
+                current = query.backwardParents[current]) {
+            unpack(current, query.backwardParents[current], path);
+        }
+        return path.toArray();
+    }
+
+    /**
+     * Append the areas of the edge from <em>a</em> to <em>b</em> (excluding <em>a</em>) to the
+     * path, expanding shortcuts recursively.
+     */
+    private void unpack(int a, int b, Path path) {
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = a;
+        stack[size++] = b;
+        while (size > 0) {
+            final int y = stack[--size];
+            final int x = stack[--size];
+            final int middle = getMiddle(x, y);
+            if (middle == NONE) {
+                path.add(areaIds[y]);
+                continue;
+            }
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            // (x, middle) must be expanded before (middle, y)
+            stack[size++] = middle;
+            stack[size++] = y;
+            stack[size++] = x;
+            stack[size++] = middle;
+        }
+    }
+
+    private int getMiddle(int a, int b) {
+        final int lower = rank[a] < rank[b] ? a : b;
+        final int higher = lower == a ? b : a;
+        for (int k = offsets[lower]; k < offsets[lower+1]; k++) {
+            if (targets[k] == higher) {
+                return middles[k];
+            }
+        }
+        throw new IllegalStateException("Missing edge between " + areaIds[a] + " and " + areaIds[b]);
+    }
+
+    /**
+     * Per-thread state of the bidirectional upward searches.
+     */
+    private class Query {
+        private final IndexedHeap forwardOpen;
+        private final IndexedHeap backwardOpen;
+        private final long[] forwardDistances;
+        private final long[] backwardDistances;
+        private final int[] forwardParents;
+        private final int[] backwardParents;
+        private final int[] forwardStamps;
+        private final int[] backwardStamps;
+        private int stamp = 0;
+        private long best;
+
+        public Query(int n) {
+            forwardOpen = new IndexedHeap(n);
+            backwardOpen = new IndexedHeap(n);
+            forwardDistances = new long[n];
+            backwardDistances = new long[n];
+            forwardParents = new int[n];
+            backwardParents = new int[n];
+            forwardStamps = new int[n];
+            backwardStamps = new int[n];
+        }
+
+        /**
+         * Run a query, leaving the length of the shortest path in <em>best</em>.
+         *
+         * @return the area where both searches meet, or NONE if there is no path.
+         */
+        public int run(int s, int t) {
+            forwardOpen.clear();
+            backwardOpen.clear();
+            stamp++;
+            best = Long.MAX_VALUE;
+            int meeting = NONE;
+
+            reach(forwardOpen, forwardDistances, forwardParents, forwardStamps, s, 0, NONE);
+            reach(backwardOpen, backwardDistances, backwardParents, backwardStamps, t, 0, NONE);
+            while (true) {
+                final boolean forwardDone = forwardOpen.isEmpty() || forwardOpen.peekKey() >= best;
+                final boolean backwardDone = backwardOpen.isEmpty() || backwardOpen.peekKey() >= best;
+                if (forwardDone && backwardDone) {
+                    break;
+                }
+
+                final boolean forward = backwardDone
+                        || (!forwardDone && forwardOpen.peekKey() <= backwardOpen.peekKey());
+                final IndexedHeap open = forward ? forwardOpen : backwardOpen;
+                final long[] distances = forward ? forwardDistances : backwardDistances;
+                final int[] parents = forward ? forwardParents : backwardParents;
+                final int[] stamps = forward ? forwardStamps : backwardStamps;
+                final long[] otherDistances = forward ? backwardDistances : forwardDistances;
+                final int[] otherStamps = forward ? backwardStamps : forwardStamps;
+
+                final int u = open.poll();
+                final long du = distances[u];
+                if (otherStamps[u] == stamp && du + otherDistances[u] < best) {
+                    best = du + otherDistances[u];
+                    meeting = u;
+                }
+                for (int k = offsets[u]; k < offsets[u+1]; k++) {
+                    final int v = targets[k];
+                    final long dv = du + weights[k];
+                    if (stamps[v] != stamp || dv < distances[v]) {
+                        reach(open, distances, parents, stamps, v, dv, u);
+                    }
+                }
+            }
+            return meeting;
+        }
+
+        private void reach(IndexedHeap open, long[] distances, int[] parents, int[] stamps,
+                int node, long distance, int parent) {
+            stamps[node] = stamp;
+            distances[node] = distance;
+            parents[node] = parent;
+            open.insertOrDecrease(node, distance);
+        }
+    }
+
+    /**
+     * Growable list of area ids.
+     */
+    private static class Path {
+        private int[] ids = new int[32];
+        private int size = 0;
+
+        public void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * Open an existing hierarchy.
+     *
+     * @param file hierarchy file.
+     * @param model world model that the hierarchy must correspond to.
+     * @param searchClass search class that must have been used to build the hierarchy.
+     * @return the loaded hierarchy, or <em>null</em> if it does not match the given map or
+     * search class.
+     * @throws IOException if the file can not be read.
+     */
+    public static ContractionHierarchy open(File file, StandardWorldModel model, String searchClass)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Logger.warn("File {} is not a contraction hierarchy.", file);
+                return null;
+            }
+            final long fingerprint = in.readLong();
+            final String fileSearchClass = in.readUTF();
+            if (fingerprint != ShortestPathTrees.getFingerprint(model) || !fileSearchClass.equals(searchClass)) {
+                Logger.warn("Contraction hierarchy {} was built for a different map or search class ({}).",
+                        file, fileSearchClass);
+                return null;
+            }
+
+            final int n = in.readInt();
+            final int[] areaIds = readInts(in, n);
+            final int[] rank = readInts(in, n);
+            final int[] offsets = readInts(in, n+1);
+            final int m = offsets[n];
+            final int[] targets = readInts(in, m);
+            final int[] weights = readInts(in, m);
+            final int[] middles = readInts(in, m);
+            Logger.info("Loaded contraction hierarchy of {} areas and {} upward edges from {}", n, m, file);
+            return new ContractionHierarchy(areaIds, rank, offsets, targets, weights, middles);
+        }
+    }
+
+    /**
+     * Build the contraction hierarchy of the given world and store it in a file.
+     *
+     * @param file hierarchy file to create.
+     * @param model world model.
+     * @param searchClass configured search class, which determines the cost of each edge.
+     * @return the built hierarchy.
+     * @throws IOException if the file can not be written.
+     */
+    public static ContractionHierarchy build(File file, StandardWorldModel model, String searchClass)
+            throws IOException {
+        final long start = System.currentTimeMillis();
+        final List<StandardEntity> areas = ShortestPathTrees.getSortedAreas(model);
+        final int[] areaIds = ShortestPathTrees.getAreaIds(areas);
+        ContractionHierarchy hierarchy = build(areaIds,
+                ShortestPathTrees.buildGraph(areas, model, searchClass));
+        Logger.info("Built contraction hierarchy of {} areas ({} upward edges) in {} ms",
+                areaIds.length, hierarchy.targets.length, System.currentTimeMillis() - start);
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(ShortestPathTrees.getFingerprint(model));
+            out.writeUTF(searchClass);
+            out.writeInt(areaIds.length);
+            writeInts(out, areaIds);
+            writeInts(out, hierarchy.rank);
+            writeInts(out, hierarchy.offsets);
+            writeInts(out, hierarchy.targets);
+            writeInts(out, hierarchy.weights);
+            writeInts(out, hierarchy.middles);
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Unable to move " + tmpFile + " to " + file);
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Contract the given graph.
+     *
+     * @param areaIds ids of the areas, by index.
+     * @param graph neighbor offsets, neighbors and edge weights, as built by
+     * {@link ShortestPathTrees#buildGraph}.
+     * @return the hierarchy.
+     */
+    static ContractionHierarchy build(int[] areaIds, int[][] graph) {
+        final int n = areaIds.length;
+
+        Contractor contractor = new Contractor(n);
+        for (int u=0; u<n; u++) {
+            for (int k = graph[0][u]; k < graph[0][u+1]; k++) {
+                contractor.addEdge(u, graph[1][k], graph[2][k], NONE);
+            }
+        }
+        final int[] rank = contractor.contract();
+
+        // Keep only the edges towards areas contracted later
+        final int[] offsets = new int[n+1];
+        for (int u=0; u<n; u++) {
+            int count = 0;
+            for (int i=0; i<contractor.degrees[u]; i++) {
+                if (rank[contractor.neighbors[u][i]] > rank[u]) {
+                    count++;
+                }
+            }
+            offsets[u+1] = offsets[u] + count;
+        }
+        final int m = offsets[n];
+        final int[] targets = new int[m];
+        final int[] weights = new int[m];
+        final int[] middles = new int[m];
+        for (int u=0; u<n; u++) {
+            int k = offsets[u];
+            for (int i=0; i<contractor.degrees[u]; i++) {
+                final int v = contractor.neighbors[u][i];
+                if (rank[v] > rank[u]) {
+                    targets[k] = v;
+                    weights[k] = contractor.weights[u][i];
+                    middles[k] = contractor.middles[u][i];
+                    k++;
+                }
+            }
+        }
+        Logger.debug("Added {} shortcuts while contracting {} areas", contractor.shortcuts, n);
+        return new ContractionHierarchy(areaIds, rank, offsets, targets, weights, middles);
+    }
+
+    private static int[] readInts(DataInputStream in, int n) throws IOException {
+        int[] values = new int[n];
+        for (int i=0; i<n; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Undirected graph that is contracted one area at a time.
+     */
+    private static class Contractor {
+        private final int n;
+        private final int[][] neighbors;
+        private final int[][] weights;
+        private final int[][] middles;
+        private final int[] degrees;
+        private final boolean[] contracted;
+        private final int[] deletedNeighbors;
+        private int shortcuts = 0;
+
+        // Witness search state
+        private final IndexedHeap open;
+        private final long[] distances;
+        private final int[] stamps;
+        private int stamp = 0;
+
+        public Contractor(int n) {
+            this.n = n;
+            neighbors = new int[n][4];
+            weights = new int[n][4];
+            middles = new int[n][4];
+            degrees = new int[n];
+            contracted = new boolean[n];
+            deletedNeighbors = new int[n];
+            open = new IndexedHeap(n);
+            distances = new long[n];
+            stamps = new int[n];
+        }
+
+        public void addEdge(int u, int v, int weight, int middle) {
+            if (u != v) {
+                setEdge(u, v, weight, middle);
+                setEdge(v, u, weight, middle);
+            }
+        }
+
+        private void setEdge(int u, int v, int weight, int middle) {
+            for (int i=0; i<degrees[u]; i++) {
+                if (neighbors[u][i] == v) {
+                    if (weight < weights[u][i]) {
+                        weights[u][i] = weight;
+                        middles[u][i] = middle;
+                    }
+                    return;
+                }
+            }
+            final int d = degrees[u]++;
+            if (d == neighbors[u].length) {
+                neighbors[u] = Arrays.copyOf(neighbors[u], d * 2);
+                weights[u] = Arrays.copyOf(weights[u], d * 2);
+                middles[u] = Arrays.copyOf(middles[u], d * 2);
+            }
+            neighbors[u][d] = v;
+            weights[u][d] = weight;
+            middles[u][d] = middle;
+        }
+
+        /**
+         * Contract all the areas.
+         *
+         * @return rank (contraction order) of each area.
+         */
+        public int[] contract() {
+            IndexedHeap order = new IndexedHeap(n);
+            for (int v=0; v<n; v++) {
+                order.insertOrDecrease(v, getPriority(v));
+            }
+
+            int[] rank = new int[n];
+            int next = 0;
+            while (!order.isEmpty()) {
+                final int v = order.poll();
+                // Lazy update: postpone the area if its priority has grown meanwhile
+                final long priority = getPriority(v);
+                if (!order.isEmpty() && priority > order.peekKey()) {
+                    order.insertOrDecrease(v, priority);
+                    continue;
+                }
+
+                shortcuts += processShortcuts(v, true);
+                contracted[v] = true;
+                rank[v] = next++;
+                for (int i=0; i<degrees[v]; i++) {
+                    deletedNeighbors[neighbors[v][i]]++;
+                }
+            }
+            return rank;
+        }
+
+        private long getPriority(int v) {
+            int degree = 0;
+            for (int i=0; i<degrees[v]; i++) {
+                if (!contracted[neighbors[v][i]]) {
+                    degree++;
+                }
+            }
+            return processShortcuts(v, false) - degree + deletedNeighbors[v];
+        }
+
+        /**
+         * Find the shortcuts needed to contract an area, adding them if requested.
+         *
+         * @return number of shortcuts.
+         */
+        private int processShortcuts(int v, boolean add) {
+            // Snapshot of the remaining neighbors, since adding shortcuts may grow the lists
+            int count = 0;
+            int[] nbs = new int[degrees[v]];
+            int[] nws = new int[degrees[v]];
+            for (int i=0; i<degrees[v]; i++) {
+                if (!contracted[neighbors[v][i]]) {
+                    nbs[count] = neighbors[v][i];
+                    nws[count] = weights[v][i];
+                    count++;
+                }
+            }
+
+            int result = 0;
+            for (int i=0; i<count-1; i++) {
+                long limit = 0;
+                for (int j=i+1; j<count; j++) {
+                    limit = Math.max(limit, (long)nws[i] + nws[j]);
+                }
+                witnessSearch(nbs[i], v, limit);
+                for (int j=i+1; j<count; j++) {
+                    final long through = (long)nws[i] + nws[j];
+                    if (stamps[nbs[j]] == stamp && distances[nbs[j]] <= through) {
+                        continue;
+                    }
+                    result++;
+                    if (add) {
+                        addEdge(nbs[i], nbs[j], (int)through, v);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Dijkstra search from an area among the uncontracted ones, avoiding the one being
+         * contracted, up to the given distance or number of settled areas.
+         */
+        private void witnessSearch(int source, int avoid, long limit) {
+            open.clear();
+            stamp++;
+            stamps[source] = stamp;
+            distances[source] = 0;
+            open.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!open.isEmpty() && settled < WITNESS_LIMIT) {
+                if (open.peekKey() > limit) {
+                    break;
+                }
+                final int u = open.poll();
+                settled++;
+                final long du = distances[u];
+                for (int i=0; i<degrees[u]; i++) {
+                    final int w = neighbors[u][i];
+                    if (w == avoid || contracted[w]) {
+                        continue;
+                    }
+                    final long dw = du + weights[u][i];
+                    if (stamps[w] != stamp || dw < distances[w]) {
+                        stamps[w] = stamp;
+                        distances[w] = dw;
+                        open.insertOrDecrease(w, dw);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -23,6 +23,17 @@ public class EntityIDPair implements Comparable<EntityIDPair>, Serializable {
         this.second = second.getValue();
     }
 
+    /**
+     * Packs a pair of entity ids in a single key, ordered as the pairs themselves.
+     *
+     * @param first id of the first entity, which must not be negative.
+     * @param second id of the second entity, which must not be negative.
+     * @return packed key of the pair.
+     */
+    public static long pack(int first, int second) {
+        return ((long)first << 32) | (second & 0xFFFFFFFFL);
+    }
+
     public EntityID first() {
         return new EntityID(first);
     }
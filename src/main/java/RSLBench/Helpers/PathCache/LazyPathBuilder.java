@@ -0,0 +1,174 @@
+package RSLBench.Helpers.PathCache;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mapdb.BTreeMap;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Computes the paths of a mapdb paths database on demand.
+ * <p/>
+ * The first time a path from some source area is requested, the whole
+ * shortest path tree of that source is computed (on a bounded pool of worker
+ * threads) and all the paths from that source are stored in the database, so
+ * that they are available to later queries and later runs. Sources whose paths
+ * have already been stored are recorded in the database too.
+ * <p/>
+ * Sources can also be prefetched in the background by a single low priority
+ * thread. Queries for a source that is still waiting to be prefetched compute
+ * it right away instead of waiting for its turn.
+ */
+class LazyPathBuilder {
+    private static final Logger Logger = LogManager.getLogger(LazyPathBuilder.class);
+
+    private final BTreeMap<Long, int[]> paths;
+    private final NavigableSet<Integer> computedSources;
+    private final int[] areaIds;
+    private final TIntIntHashMap areaIdx;
+    private final int[][] graph;
+    private final ConcurrentHashMap<Integer, SourceTask> pending = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final ExecutorService prefetcher;
+
+    /**
+     * Build a new lazy builder.
+     *
+     * @param model world model.
+     * @param searchClass configured search class, which determines the cost of each edge.
+     * @param paths map where the computed paths are stored.
+     * @param computedSources set where the ids of the sources already stored are recorded.
+     * @param threads number of worker threads.
+     */
+    public LazyPathBuilder(StandardWorldModel model, String searchClass,
+            BTreeMap<Long, int[]> paths, NavigableSet<Integer> computedSources, int threads) {
+        this.paths = paths;
+        this.computedSources = computedSources;
+        List<StandardEntity> areas = ShortestPathTrees.getSortedAreas(model);
+        areaIds = ShortestPathTrees.getAreaIds(areas);
+        areaIdx = ShortestPathTrees.buildIndex(areaIds);
+        graph = ShortestPathTrees.buildGraph(areas, model, searchClass);
+        workers = Executors.newFixedThreadPool(threads, new DaemonThreadFactory(Thread.NORM_PRIORITY));
+        prefetcher = Executors.newSingleThreadExecutor(new DaemonThreadFactory(Thread.MIN_PRIORITY));
+    }
+
+    /**
+     * Get the path between two areas, computing all the paths from the origin if necessary.
+     *
+     * @param from id of the origin.
+     * @param to id of the destination.
+     * @return ids of the areas in the path, or <em>null</em> if there is no such path.
+     */
+    public int[] getPath(int from, int to) {
+        if (!computedSources.contains(from)) {
+            SourceTask task = submit(from, workers);
+            if (task.prefetch) {
+                // Does nothing if the prefetcher has already started it
+                task.run();
+            }
+            try {
+                task.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                Logger.error("Unable to compute the paths from " + from, ex);
+                throw new RuntimeException(ex);
+            }
+        }
+        return paths.get(EntityIDPair.pack(from, to));
+    }
+
+    /**
+     * Compute the paths from the given sources in the background.
+     *
+     * @param sources ids of the source areas.
+     */
+    public void prefetch(Collection<EntityID> sources) {
+        int count = 0;
+        for (EntityID source : sources) {
+            if (!computedSources.contains(source.getValue())) {
+                submit(source.getValue(), prefetcher);
+                count++;
+            }
+        }
+        Logger.info("Prefetching the paths from {} sources", count);
+    }
+
+    /**
+     * Submit the computation of a source, unless it has already been submitted.
+     *
+     * @return task that completes when all the paths from the source are stored.
+     */
+    private SourceTask submit(final int source, ExecutorService executor) {
+        SourceTask task = pending.get(source);
+        if (task != null) {
+            return task;
+        }
+
+        task = new SourceTask(source, executor == prefetcher);
+        SourceTask previous = pending.putIfAbsent(source, task);
+        if (previous != null) {
+            return previous;
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    private void computeSource(int source) {
+        final int s = areaIdx.get(source);
+        if (s < 0 || computedSources.contains(source)) {
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        final int[] predecessors = ShortestPathTrees.computeTree(s, graph[0], graph[1], graph[2]);
+        for (int t=0; t<areaIds.length; t++) {
+            int[] path = ShortestPathTrees.getTreePath(predecessors, areaIds, s, t);
+            if (path != null) {
+                paths.put(EntityIDPair.pack(source, areaIds[t]), path);
+            }
+        }
+        computedSources.add(source);
+        Logger.debug("Computed the paths from {} in {} ms", source, System.currentTimeMillis() - start);
+    }
+
+    private class SourceTask extends FutureTask<Void> {
+        private final boolean prefetch;
+
+        public SourceTask(final int source, boolean prefetch) {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    computeSource(source);
+                }
+            }, null);
+            this.prefetch = prefetch;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final int priority;
+
+        public DaemonThreadFactory(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "lazy-paths");
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        }
+    }
+
+}
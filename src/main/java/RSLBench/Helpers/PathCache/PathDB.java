@@ -5,23 +5,23 @@
 package RSLBench.Helpers.PathCache;
 
 import RSLBench.Constants;
-import RSLBench.Search.DistanceInterface;
-import RSLBench.Search.Graph;
-import RSLBench.Search.SearchAlgorithm;
 import RSLBench.Search.SearchFactory;
 import RSLBench.Search.SearchResults;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.mapdb.BTreeKeySerializer;
 import org.mapdb.BTreeMap;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import rescuecore2.config.Config;
+import rescuecore2.standard.entities.Human;
 import rescuecore2.standard.entities.StandardEntity;
 import rescuecore2.standard.entities.StandardEntityURN;
 import rescuecore2.standard.entities.StandardWorldModel;
@@ -34,33 +34,222 @@ import rescuecore2.worldmodel.EntityID;
 public class PathDB {
     private static final Logger Logger = LogManager.getLogger(PathDB.class);
 
+    /**
+     * Format of the paths database: "mapdb" (one path per pair), "spt" (one tree per area) or
+     * "ch" (contraction hierarchy, where paths are searched for on each query)
+     */
+    public static final String KEY_FORMAT = "cache.format";
+    public static final String FORMAT_MAPDB = "mapdb";
+    public static final String FORMAT_SPT = "spt";
+    public static final String FORMAT_CH = "ch";
+
+    /** Memory (in MB) devoted to cache the paths read from a mapdb database */
+    public static final String KEY_LRU_SIZE = "cache.lru_mb";
+
+    /** Compute (and store) the paths of a mapdb database on demand instead of upfront */
+    public static final String KEY_LAZY = "cache.lazy";
+    /** Number of threads used to compute paths on demand */
+    public static final String KEY_LAZY_THREADS = "cache.lazy_threads";
+    /** Prefetch the paths from refuges and the initial positions of agents in the background */
+    public static final String KEY_PREFETCH = "cache.prefetch";
+    /** Number of source areas in each shard written while building a mapdb database */
+    public static final String KEY_SHARD_SOURCES = "cache.shard_sources";
+
     private static File dbFile;
+    private static String format;
+    private static String searchClass;
+    private static long lruBytes;
+    private static boolean lazy;
+    private static int lazyThreads;
+    private static boolean prefetch;
+    private static int shardSources;
+    private static ContractionHierarchy loadedHierarchy;
     private static PathDB instance;
     private static StandardWorldModel model;
 
-    private final BTreeMap<EntityIDPair, PathList> paths;
+    /** Name of the map of paths, keyed by the packed ids of their end points */
+    static final String PATHS_MAP = "packed_paths";
+    /** Name of the map of paths in old databases, keyed by {@link EntityIDPair} */
+    private static final String LEGACY_PATHS_MAP = "paths";
+    /** Name of the set of sources whose paths have been computed on demand */
+    private static final String LAZY_SOURCES_SET = "lazy_sources";
+    /** Name of the flag recording that a database contains the paths between all the areas */
+    private static final String COMPLETE_FLAG = "complete";
+
+    private final BTreeMap<Long, int[]> paths;
+    private final AtomicLong lookupTime = new AtomicLong();
+    private final ShortestPathTrees trees;
+    private final ContractionHierarchy hierarchy;
+    private final PathLRUCache cache;
+    private final LazyPathBuilder builder;
 
     private PathDB(File f) {
-        DB db = DBMaker.newFileDB(f).readOnly().transactionDisable()
+        if (FORMAT_CH.equals(format)) {
+            hierarchy = loadedHierarchy;
+            trees = null;
+            paths = null;
+            cache = null;
+            builder = null;
+            return;
+        }
+
+        hierarchy = null;
+        if (FORMAT_SPT.equals(format)) {
+            try {
+                trees = ShortestPathTrees.open(f, model, searchClass);
+            } catch (IOException ex) {
+                Logger.error("Unable to open paths database " + f, ex);
+                throw new RuntimeException(ex);
+            }
+            if (trees == null) {
+                throw new RuntimeException("Paths database " + f + " does not match this map");
+            }
+            paths = null;
+            cache = null;
+            builder = null;
+            return;
+        }
+
+        trees = null;
+        cache = new PathLRUCache(lruBytes);
+        if (!lazy) {
+            DB db = DBMaker.newFileDB(f).readOnly().transactionDisable()
+                    .compressionEnable().closeOnJvmShutdown().make();
+            paths = db.getTreeMap(PATHS_MAP);
+            builder = null;
+            return;
+        }
+
+        DB db = DBMaker.newFileDB(f).transactionDisable()
                 .compressionEnable().closeOnJvmShutdown().make();
-        paths = db.getTreeMap("paths");
+        paths = db.createTreeMap(PATHS_MAP)
+                .keySerializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG)
+                .valueSerializer(new PathSerializer())
+                .makeOrGet();
+        NavigableSet<Integer> sources = db.getTreeSet(LAZY_SOURCES_SET);
+        Logger.info("Computing paths on demand, {} sources already stored in {}", sources.size(), f);
+        builder = new LazyPathBuilder(model, searchClass, paths, sources, lazyThreads);
+        if (prefetch) {
+            builder.prefetch(getPrefetchSources());
+        }
+    }
+
+    /**
+     * Get the areas whose paths are likely to be needed: the refuges and the initial positions
+     * of the agents.
+     */
+    private static Set<EntityID> getPrefetchSources() {
+        Set<EntityID> sources = new LinkedHashSet<>();
+        for (StandardEntity agent : model.getEntitiesOfType(
+                StandardEntityURN.FIRE_BRIGADE, StandardEntityURN.POLICE_FORCE)) {
+            Human human = (Human)agent;
+            if (human.isPositionDefined()) {
+                sources.add(human.getPosition());
+            }
+        }
+        for (StandardEntity refuge : model.getEntitiesOfType(StandardEntityURN.REFUGE)) {
+            sources.add(refuge.getID());
+        }
+        return sources;
     }
 
     public SearchResults search(EntityID from, EntityID to) {
-        boolean reverse = false;
+        if (trees != null || hierarchy != null) {
+            final long start = System.nanoTime();
+            int[] path = trees != null ? trees.getPath(from, to) : hierarchy.getPath(from, to);
+            lookupTime.addAndGet(System.nanoTime() - start);
+            if (path == null) {
+                Logger.error("Unable to find path from {} ({}) to {} ({})!",
+                        from, model.getEntity(from), to, model.getEntity(to));
+                throw new RuntimeException("Unable to find path from " + from + " to " + to);
+            }
+            return SearchResults.build(path, model, false);
+        }
+
+        // Cached paths are oriented from the lowest to the highest id
+        final int f = from.getValue(), t = to.getValue();
+        final long key = EntityIDPair.pack(Math.min(f, t), Math.max(f, t));
+        int[] path = cache.get(key);
+        if (path == null) {
+            final long start = System.nanoTime();
+            boolean forward = true;
+            path = paths.get(EntityIDPair.pack(f, t));
+            if (path == null) {
+                path = paths.get(EntityIDPair.pack(t, f));
+                forward = false;
+            }
+            if (path == null && builder != null) {
+                path = builder.getPath(f, t);
+                forward = true;
+            }
+            lookupTime.addAndGet(System.nanoTime() - start);
+            if (path == null) {
+                Logger.error("Unable to find path from {} ({}) to {} ({})!",
+                        from, model.getEntity(from), to, model.getEntity(to));
+                throw new RuntimeException("Unable to find path from " + from + " to " + to);
+            }
 
-        EntityIDPair key = new EntityIDPair(from, to);
-        if (!paths.containsKey(key)) {
-            key = new EntityIDPair(to, from);
-            reverse = true;
+            if (forward != (f <= t)) {
+                path = reverse(path);
+            }
+            cache.put(key, path);
         }
-        if (!paths.containsKey(key)) {
-            Logger.error("Unable to find path from {} ({}) to {} ({})!",
-                    from, model.getEntity(from), to, model.getEntity(to));
-            throw new RuntimeException("Unable to find path from " + from + " to " + to);
+        return SearchResults.build(path, model, f > t);
+    }
+
+    private static int[] reverse(int[] path) {
+        int[] result = new int[path.length];
+        for (int i=0; i<path.length; i++) {
+            result[i] = path[path.length-1-i];
         }
-        PathList path = paths.get(key);
-        return SearchResults.build(path.getElements(), model, reverse);
+        return result;
+    }
+
+    /**
+     * Get the number of queries answered from the in-memory cache.
+     *
+     * @return number of cache hits so far.
+     */
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    /**
+     * Get the number of queries that had to be read from the database.
+     *
+     * @return number of cache misses so far.
+     */
+    public long getCacheMisses() {
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    /**
+     * Get the number of paths evicted from the in-memory cache.
+     *
+     * @return number of cache evictions so far.
+     */
+    public long getCacheEvictions() {
+        return cache == null ? 0 : cache.getEvictions();
+    }
+
+    /**
+     * Get the memory taken by the paths in the in-memory cache.
+     *
+     * @return current (approximate) size of the cache, in bytes.
+     */
+    public long getCacheBytes() {
+        return cache == null ? 0 : cache.getBytes();
+    }
+
+    /**
+     * Get the total time spent reading (and decoding) paths from the database, or walking the
+     * shortest path trees or contraction hierarchy. Paths served from the in-memory cache are
+     * not included.
+     *
+     * @return lookup time so far, in nanoseconds.
+     */
+    public long getLookupTime() {
+        return lookupTime.get();
     }
 
     public static PathDB getInstance() {
@@ -70,60 +259,229 @@ public class PathDB {
         return instance;
     }
 
+    /**
+     * Get the simple name of the configured search class, which defines the costs of the paths.
+     *
+     * @return search class of the paths database.
+     */
+    public static String getSearchClass() {
+        return searchClass;
+    }
+
     public static void initialize(Config config, StandardWorldModel model) {
         PathDB.model = model;
         String cachePath = config.getValue(Constants.KEY_CACHE_PATH, Constants.DEFAULT_CACHE_PATH);
-        String searchClass = config.getValue(SearchFactory.KEY_SEARCH_CLASS);
+        searchClass = config.getValue(SearchFactory.KEY_SEARCH_CLASS);
         searchClass = searchClass.substring(searchClass.lastIndexOf('.')+1);
         String map = config.getValue(Constants.KEY_MAP_NAME);
+        format = config.getValue(KEY_FORMAT, FORMAT_MAPDB);
+        lruBytes = config.getIntValue(KEY_LRU_SIZE, 64) * 1024L * 1024L;
+        lazy = config.getBooleanValue(KEY_LAZY, false);
+        lazyThreads = config.getIntValue(KEY_LAZY_THREADS, Runtime.getRuntime().availableProcessors());
+        prefetch = config.getBooleanValue(KEY_PREFETCH, false);
+        shardSources = config.getIntValue(KEY_SHARD_SOURCES, 256);
+
+        if (FORMAT_SPT.equals(format)) {
+            initializeTrees(new File(cachePath + map + "-" + searchClass + ".spt"));
+            return;
+        }
+        if (FORMAT_CH.equals(format)) {
+            initializeHierarchy(new File(cachePath + map + "-" + searchClass + ".ch"));
+            return;
+        }
 
         dbFile = new File(cachePath + map + "-" + searchClass + ".paths");
         if (dbFile.exists() && dbFile.isFile()) {
-            Logger.info("Using precomputed paths database: {}", dbFile);
+            migrate(dbFile);
+            if (isComplete(dbFile)) {
+                Logger.info("Using precomputed paths database: {}", dbFile);
+            } else if (lazy) {
+                Logger.info("Paths database {} will be filled on demand", dbFile);
+            } else {
+                // Never trust a partial database, it would fail in the middle of the simulation
+                Logger.warn("Paths database {} is incomplete, computing the missing paths on demand", dbFile);
+                lazy = true;
+            }
+            return;
+        }
+        if (lazy) {
+            Logger.info("Paths database {} will be filled on demand", dbFile);
             return;
         }
 
         Logger.info("Building precomputed paths database: {}", dbFile);
+        try {
+            new ShardedPathsBuilder(dbFile, model, searchClass, shardSources).build();
+        } catch (IOException ex) {
+            Logger.error("Unable to build paths database " + dbFile, ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Check whether a database contains the paths between all the areas, either because it was
+     * fully built (and flagged as complete) or because all the sources have been computed on
+     * demand.
+     */
+    private static boolean isComplete(File file) {
+        DB db = DBMaker.newFileDB(file).readOnly().transactionDisable()
+                .compressionEnable().make();
+        try {
+            if (db.exists(COMPLETE_FLAG)) {
+                return true;
+            }
+            if (!db.exists(LAZY_SOURCES_SET)) {
+                return false;
+            }
+            final int nAreas = ShortestPathTrees.getSortedAreas(model).size();
+            return db.getTreeSet(LAZY_SOURCES_SET).size() >= nAreas;
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Flag a database as containing the paths between all the areas.
+     *
+     * @param db database being written.
+     */
+    static void markComplete(DB db) {
+        db.createAtomicBoolean(COMPLETE_FLAG, true);
+    }
+
+    static BTreeMap<Long, int[]> createPathsMap(DB db) {
+        return db.createTreeMap(PATHS_MAP)
+                .keySerializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG)
+                .valueSerializer(new PathSerializer())
+                .<Long, int[]>make();
+    }
+
+    /**
+     * Convert a database written with java-serialized keys and paths to the packed format,
+     * replacing the original file.
+     * <p/>
+     * Old paths did not include their origin, so it is prepended to make them consistent with
+     * the paths built since then.
+     */
+    private static void migrate(File file) {
+        DB legacy = DBMaker.newFileDB(file).readOnly().transactionDisable()
+                .compressionEnable().make();
+        if (legacy.exists(PATHS_MAP) || !legacy.exists(LEGACY_PATHS_MAP)) {
+            legacy.close();
+            return;
+        }
+
+        Logger.info("Migrating paths database {} to the packed format", file);
+        final long start = System.currentTimeMillis();
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DB db = DBMaker.newFileDB(tmpFile).asyncWriteEnable().transactionDisable()
+                .compressionEnable().make();
+        BTreeMap<Long, int[]> paths = createPathsMap(db);
+        BTreeMap<EntityIDPair, PathList> legacyPaths = legacy.getTreeMap(LEGACY_PATHS_MAP);
+        long nPaths = 0;
+        final long nAreas = ShortestPathTrees.getSortedAreas(model).size();
+        for (Map.Entry<EntityIDPair, PathList> entry : legacyPaths.entrySet()) {
+            final EntityIDPair pair = entry.getKey();
+            paths.put(EntityIDPair.pack(pair.first().getValue(), pair.second().getValue()),
+                    withOrigin(pair.first().getValue(), entry.getValue().getElements()));
+            nPaths++;
+        }
+        // Old builds stored one path per pair of areas (including each area with itself)
+        if (nPaths == nAreas * (nAreas + 1) / 2) {
+            markComplete(db);
+        } else {
+            Logger.warn("Legacy paths database {} only has {} of {} paths", file, nPaths,
+                    nAreas * (nAreas + 1) / 2);
+        }
+        db.close();
+        legacy.close();
+
+        moveDatabase(tmpFile, file);
+        Logger.info("Migrated {} paths in {} ms", nPaths, System.currentTimeMillis() - start);
+    }
+
+    private static int[] withOrigin(int origin, int[] path) {
+        if (path.length > 0 && path[0] == origin) {
+            return path;
+        }
+        int[] result = new int[path.length+1];
+        result[0] = origin;
+        System.arraycopy(path, 0, result, 1, path.length);
+        return result;
+    }
+
+    /** MapDB keeps its data in the main file plus the ".p" (and ".t") companions */
+    private static final String[] DB_SUFFIXES = new String[]{"", ".p", ".t"};
 
-        DB db = DBMaker.newFileDB(dbFile).asyncWriteEnable().transactionDisable().compressionEnable().make();
-        final BTreeMap<EntityIDPair, PathList> paths = db.getTreeMap("paths");
-
-        // Compute number of road-to-road pairs
-        final SearchAlgorithm search = SearchFactory.buildSearchAlgorithm(config);
-        final Graph g = Graph.getInstance(model);
-        final DistanceInterface distanceMatrix = new DistanceInterface(model);
-
-        final List<StandardEntity> areas = new ArrayList<>(model.getEntitiesOfType(
-                StandardEntityURN.ROAD, StandardEntityURN.BUILDING));
-
-        int threads = Runtime.getRuntime().availableProcessors();
-        ExecutorService service = Executors.newFixedThreadPool(threads);
-
-        final int nAreas = areas.size();
-        for (int nArea = 0; nArea < nAreas; nArea++) {
-            final int i = nArea;
-            service.execute(new Runnable() {
-                @Override
-                public void run() {
-                    final EntityID r1 = areas.get(i).getID();
-                    for (int j=i; j < nAreas; j++) {
-                        EntityID r2 = areas.get(j).getID();
-                        SearchResults result = search.search(r1, r2, g, distanceMatrix);
-                        paths.put(new EntityIDPair(r1,r2), new PathList(result.getPathIds()));
-                    }
-                    Logger.info("Done with area {} of {}", i, areas.size());
+    /**
+     * Replace a mapdb database with another one.
+     *
+     * @param source database to move.
+     * @param target database to replace.
+     */
+    static void moveDatabase(File source, File target) {
+        deleteDatabase(target);
+        for (String suffix : DB_SUFFIXES) {
+            File from = new File(source.getPath() + suffix);
+            File to = new File(target.getPath() + suffix);
+            if (from.exists() && !from.renameTo(to)) {
+                throw new RuntimeException("Unable to move " + from + " to " + to);
+            }
+        }
+    }
+
+    /**
+     * Delete all the files of a mapdb database, if it exists.
+     *
+     * @param file database to delete.
+     */
+    static void deleteDatabase(File file) {
+        for (String suffix : DB_SUFFIXES) {
+            File f = new File(file.getPath() + suffix);
+            if (f.exists() && !f.delete()) {
+                throw new RuntimeException("Unable to delete " + f);
+            }
+        }
+    }
+
+    private static void initializeTrees(File file) {
+        dbFile = file;
+        try {
+            if (dbFile.exists() && dbFile.isFile()) {
+                if (ShortestPathTrees.open(dbFile, model, searchClass) != null) {
+                    Logger.info("Using precomputed shortest path trees: {}", dbFile);
+                    return;
                 }
-            });
+                Logger.warn("Rebuilding stale shortest path trees: {}", dbFile);
+            } else {
+                Logger.info("Building shortest path trees: {}", dbFile);
+            }
+            ShortestPathTrees.build(dbFile, model, searchClass);
+        } catch (IOException ex) {
+            Logger.error("Unable to build paths database " + dbFile, ex);
+            throw new RuntimeException(ex);
         }
+    }
 
-        service.shutdown();
+    private static void initializeHierarchy(File file) {
+        dbFile = file;
         try {
-            service.awaitTermination(1, TimeUnit.DAYS);
-        } catch (InterruptedException ex) {
-            Logger.error(ex);
+            loadedHierarchy = null;
+            if (dbFile.exists() && dbFile.isFile()) {
+                loadedHierarchy = ContractionHierarchy.open(dbFile, model, searchClass);
+                if (loadedHierarchy != null) {
+                    Logger.info("Using precomputed contraction hierarchy: {}", dbFile);
+                    return;
+                }
+                Logger.warn("Rebuilding stale contraction hierarchy: {}", dbFile);
+            } else {
+                Logger.info("Building contraction hierarchy: {}", dbFile);
+            }
+            loadedHierarchy = ContractionHierarchy.build(dbFile, model, searchClass);
+        } catch (IOException ex) {
+            Logger.error("Unable to build paths database " + dbFile, ex);
             throw new RuntimeException(ex);
         }
-        db.close();
     }
 
 }
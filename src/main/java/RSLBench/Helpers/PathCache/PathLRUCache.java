@@ -0,0 +1,140 @@
+package RSLBench.Helpers.PathCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, concurrent cache of decoded paths.
+ * <p/>
+ * Paths are stored as int arrays, keyed by the ids of their end points as
+ * packed by {@link EntityIDPair#pack(int, int)}. The cache is split in
+ * segments, each one a small LRU map guarded by its own lock, and the total
+ * size of the paths held by each segment is bounded so that the cache never
+ * takes (much) more than the configured amount of memory.
+ */
+public class PathLRUCache {
+    private static final int N_SEGMENTS = 16;
+
+    /** Approximate memory overhead of each cached entry, besides its path (in bytes) */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Build a new cache.
+     *
+     * @param maxBytes maximum (approximate) memory used by the cached paths.
+     */
+    public PathLRUCache(long maxBytes) {
+        segments = new Segment[N_SEGMENTS];
+        for (int i=0; i<N_SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / N_SEGMENTS);
+        }
+    }
+
+    /**
+     * Get a cached path.
+     *
+     * @param key key of the path.
+     * @return the cached path, or <em>null</em> if it is not in the cache.
+     */
+    public int[] get(long key) {
+        final int[] path = segment(key).get(key);
+        if (path == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return path;
+    }
+
+    /**
+     * Add a path to the cache, evicting the least recently used ones if necessary.
+     *
+     * @param key key of the path.
+     * @param path path to cache, which must not be modified afterwards.
+     */
+    public void put(long key, int[] path) {
+        evictions.addAndGet(segment(key).put(key, path));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the (approximate) memory taken by the cached paths.
+     *
+     * @return size of the cache in bytes.
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    private Segment segment(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int)(h >>> 60) & (N_SEGMENTS - 1)];
+    }
+
+    private static int weight(int[] path) {
+        return ENTRY_OVERHEAD + 4 * path.length;
+    }
+
+    /**
+     * A single LRU map, bounded by the total weight of its paths.
+     */
+    private static class Segment {
+        private final long maxBytes;
+        private final LinkedHashMap<Long, int[]> map = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+
+        public Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public synchronized int[] get(long key) {
+            return map.get(key);
+        }
+
+        public synchronized int put(long key, int[] path) {
+            final int[] old = map.put(key, path);
+            if (old != null) {
+                bytes -= weight(old);
+            }
+            bytes += weight(path);
+
+            // Evict the least recently used paths (but never the one just added)
+            int evicted = 0;
+            Iterator<Map.Entry<Long, int[]>> it = map.entrySet().iterator();
+            while (bytes > maxBytes && map.size() > 1) {
+                Map.Entry<Long, int[]> eldest = it.next();
+                bytes -= weight(eldest.getValue());
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        public synchronized long getBytes() {
+            return bytes;
+        }
+    }
+
+}
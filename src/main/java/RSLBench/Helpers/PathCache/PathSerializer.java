@@ -0,0 +1,53 @@
+package RSLBench.Helpers.PathCache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+/**
+ * MapDB serializer of paths, stored as arrays of area ids.
+ * <p/>
+ * Consecutive areas in a path usually have close ids, so each id is written
+ * as the (zig-zag encoded) difference with the previous one, packed as a
+ * variable-length integer. This is much more compact and faster to decode
+ * than the default java serialization of {@link PathList} objects.
+ * <p/>
+ * MapDB stores its serializers in the database catalog, hence this class
+ * must be serializable.
+ */
+public class PathSerializer implements Serializer<int[]>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void serialize(DataOutput out, int[] path) throws IOException {
+        DataOutput2.packInt(out, path.length);
+        int previous = 0;
+        for (int id : path) {
+            final int delta = id - previous;
+            DataOutput2.packInt(out, (delta << 1) ^ (delta >> 31));
+            previous = id;
+        }
+    }
+
+    @Override
+    public int[] deserialize(DataInput in, int available) throws IOException {
+        int[] path = new int[DataInput2.unpackInt(in)];
+        int previous = 0;
+        for (int i=0; i<path.length; i++) {
+            final int zigzag = DataInput2.unpackInt(in);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            path[i] = previous;
+        }
+        return path;
+    }
+
+    @Override
+    public int fixedSize() {
+        return -1;
+    }
+
+}
@@ -0,0 +1,236 @@
+package RSLBench.Helpers.PathCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+ * Builds a mapdb paths database in independent, resumable shards.
+ * <p/>
+ * Source areas are split in ranges of consecutive sources, and the paths from
+ * each range are written by a single thread to its own shard database, so
+ * threads never contend on the same store. Once a shard is complete (and
+ * closed), a marker file is written next to it. If the build is interrupted,
+ * the next run only computes the shards that lack their marker. When all the
+ * shards are complete they are merged into the final database, and removed.
+ * <p/>
+ * Shards are kept in a directory named after the database, along with a
+ * manifest that identifies the map, search class and shard size they were
+ * built for. Shards that do not match the current manifest are discarded.
+ */
+class ShardedPathsBuilder {
+    private static final Logger Logger = LogManager.getLogger(ShardedPathsBuilder.class);
+
+    private static final String MANIFEST = "manifest";
+
+    private final File dbFile;
+    private final File shardDir;
+    private final StandardWorldModel model;
+    private final String searchClass;
+    private final int shardSources;
+
+    /**
+     * Build a new sharded builder.
+     *
+     * @param dbFile final database file.
+     * @param model world model.
+     * @param searchClass configured search class, which determines the cost of each edge.
+     * @param shardSources number of source areas in each shard.
+     */
+    public ShardedPathsBuilder(File dbFile, StandardWorldModel model, String searchClass,
+            int shardSources) {
+        this.dbFile = dbFile;
+        this.shardDir = new File(dbFile.getPath() + ".shards");
+        this.model = model;
+        this.searchClass = searchClass;
+        this.shardSources = Math.max(1, shardSources);
+    }
+
+    /**
+     * Build (or resume building) the shards and merge them into the final database.
+     *
+     * @throws IOException if the shards or the database can not be written.
+     */
+    public void build() throws IOException {
+        final List<StandardEntity> areas = ShortestPathTrees.getSortedAreas(model);
+        final int[] areaIds = ShortestPathTrees.getAreaIds(areas);
+        final int[][] graph = ShortestPathTrees.buildGraph(areas, model, searchClass);
+        final int nAreas = areas.size();
+        final int nShards = (nAreas + shardSources - 1) / shardSources;
+        prepareShardDir(nAreas);
+
+        final long start = System.currentTimeMillis();
+        final AtomicInteger done = new AtomicInteger();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> results = new ArrayList<>();
+        int resumed = 0;
+        for (int nShard = 0; nShard < nShards; nShard++) {
+            final int k = nShard;
+            if (getMarker(k).exists()) {
+                resumed++;
+                continue;
+            }
+            results.add(service.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    buildShard(k, areaIds, graph);
+                    Logger.info("Done with {} of {} pending shards ({} s)", done.incrementAndGet(),
+                            nShards, (System.currentTimeMillis() - start) / 1000);
+                    return null;
+                }
+            }));
+        }
+        if (resumed > 0) {
+            Logger.info("Resuming paths database build, {} of {} shards already complete",
+                    resumed, nShards);
+        }
+        service.shutdown();
+
+        // Any failed shard (for whatever reason) aborts the build, keeping the complete ones
+        try {
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException ex) {
+            service.shutdownNow();
+            Logger.error(ex);
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            service.shutdownNow();
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw new RuntimeException("Unable to build paths database " + dbFile, ex.getCause());
+        }
+        for (int k=0; k<nShards; k++) {
+            if (!getMarker(k).exists()) {
+                throw new IOException("Shard " + getShard(k) + " is not complete");
+            }
+        }
+
+        merge(nShards);
+        for (File f : shardDir.listFiles()) {
+            f.delete();
+        }
+        shardDir.delete();
+        Logger.info("Built paths database in {} ms", System.currentTimeMillis() - start);
+    }
+
+    private void buildShard(int k, int[] areaIds, int[][] graph) throws IOException {
+        final long start = System.currentTimeMillis();
+        final File file = getShard(k);
+        PathDB.deleteDatabase(file);
+
+        DB db = DBMaker.newFileDB(file).transactionDisable().compressionEnable().make();
+        BTreeMap<Long, int[]> paths = PathDB.createPathsMap(db);
+        final int first = k * shardSources;
+        final int last = Math.min(areaIds.length, first + shardSources);
+        long nPaths = 0, unreachable = 0;
+        for (int i = first; i < last; i++) {
+            final int[] predecessors = ShortestPathTrees.computeTree(i, graph[0], graph[1], graph[2]);
+            for (int j=i; j < areaIds.length; j++) {
+                int[] path = ShortestPathTrees.getTreePath(predecessors, areaIds, i, j);
+                if (path == null) {
+                    unreachable++;
+                    continue;
+                }
+                paths.put(EntityIDPair.pack(areaIds[i], areaIds[j]), path);
+                nPaths++;
+            }
+        }
+        db.close();
+
+        if (!getMarker(k).createNewFile()) {
+            throw new IOException("Unable to mark shard " + file + " as complete");
+        }
+        final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        Logger.info("Shard {} (sources {} to {}): {} paths in {} ms ({} paths/s, {} unreachable)",
+                k, first, last-1, nPaths, elapsed, nPaths * 1000 / elapsed, unreachable);
+    }
+
+    private void merge(int nShards) throws IOException {
+        final long start = System.currentTimeMillis();
+        File tmpFile = new File(dbFile.getPath() + ".tmp");
+        PathDB.deleteDatabase(tmpFile);
+
+        DB db = DBMaker.newFileDB(tmpFile).transactionDisable().compressionEnable().make();
+        BTreeMap<Long, int[]> paths = PathDB.createPathsMap(db);
+        long nPaths = 0;
+        for (int k=0; k<nShards; k++) {
+            DB shard = DBMaker.newFileDB(getShard(k)).readOnly().transactionDisable()
+                    .compressionEnable().make();
+            BTreeMap<Long, int[]> shardPaths = shard.getTreeMap(PathDB.PATHS_MAP);
+            for (Map.Entry<Long, int[]> entry : shardPaths.entrySet()) {
+                paths.put(entry.getKey(), entry.getValue());
+                nPaths++;
+            }
+            shard.close();
+        }
+        PathDB.markComplete(db);
+        db.close();
+
+        PathDB.moveDatabase(tmpFile, dbFile);
+        Logger.info("Merged {} shards ({} paths) in {} ms", nShards, nPaths,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Make sure that the shards directory exists and that its contents correspond to the
+     * current map and settings, discarding them otherwise.
+     */
+    private void prepareShardDir(int nAreas) throws IOException {
+        final String manifest = ShortestPathTrees.getFingerprint(model) + " " + nAreas + " "
+                + shardSources + " " + searchClass;
+        final File manifestFile = new File(shardDir, MANIFEST);
+        if (manifestFile.exists()) {
+            String current;
+            try (BufferedReader in = new BufferedReader(new FileReader(manifestFile))) {
+                current = in.readLine();
+            }
+            if (manifest.equals(current)) {
+                return;
+            }
+            Logger.warn("Discarding stale shards in {}", shardDir);
+        }
+
+        if (shardDir.exists()) {
+            for (File f : shardDir.listFiles()) {
+                f.delete();
+            }
+        } else if (!shardDir.mkdirs()) {
+            throw new IOException("Unable to create shards directory " + shardDir);
+        }
+        try (PrintWriter out = new PrintWriter(new FileWriter(manifestFile))) {
+            out.println(manifest);
+        }
+    }
+
+    private File getShard(int k) {
+        return new File(shardDir, "shard-" + k);
+    }
+
+    private File getMarker(int k) {
+        return new File(shardDir, "shard-" + k + ".done");
+    }
+
+}
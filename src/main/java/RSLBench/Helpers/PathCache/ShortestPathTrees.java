@@ -0,0 +1,470 @@
+package RSLBench.Helpers.PathCache;
+
+import RSLBench.Search.BreadthFirstSearch;
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardEntityURN;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Compact paths database that stores one shortest path tree per source area.
+ * <p/>
+ * For every source area, the file holds the index of the predecessor of each
+ * other area in the shortest path from that source, so paths are rebuilt by
+ * walking back from the destination. This takes N<sup>2</sup> ints overall,
+ * instead of N<sup>2</sup> full paths.
+ * <p/>
+ * The file starts with a header that holds the map fingerprint, the search
+ * class used to build it and the ids of the areas, followed by the
+ * predecessor rows, which are memory-mapped read-only when the file is
+ * opened.
+ * <p/>
+ * Trees are built with breadth-first search if that is the configured search
+ * class, or Dijkstra's algorithm over the distances between areas otherwise.
+ */
+public class ShortestPathTrees {
+    private static final Logger Logger = LogManager.getLogger(ShortestPathTrees.class);
+
+    private static final int MAGIC = 0x53505431; // "SPT1"
+    private static final int VERSION = 1;
+    public static final int NO_PREDECESSOR = -1;
+
+    /** Maximum size of each mapped region of the file */
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final int[] areaIds;
+    private final TIntIntHashMap areaIdx;
+    private final int rowsPerChunk;
+    private final IntBuffer[] chunks;
+
+    private ShortestPathTrees(int[] areaIds, IntBuffer[] chunks, int rowsPerChunk) {
+        this.areaIds = areaIds;
+        this.chunks = chunks;
+        this.rowsPerChunk = rowsPerChunk;
+        areaIdx = buildIndex(areaIds);
+    }
+
+    /**
+     * Get the number of areas in the database.
+     *
+     * @return number of areas.
+     */
+    public int getNumAreas() {
+        return areaIds.length;
+    }
+
+    /**
+     * Get the shortest path between two areas.
+     *
+     * @param from origin of the path.
+     * @param to destination of the path.
+     * @return ids of the areas in the path, including both the origin and the destination, or
+     * <em>null</em> if there is no such path.
+     */
+    public int[] getPath(EntityID from, EntityID to) {
+        final int s = areaIdx.get(from.getValue());
+        final int t = areaIdx.get(to.getValue());
+        if (s < 0 || t < 0) {
+            return null;
+        }
+
+        final IntBuffer chunk = chunks[s / rowsPerChunk];
+        final int offset = (s % rowsPerChunk) * areaIds.length;
+        int[] reversed = new int[16];
+        int length = 0;
+        int current = t;
+        while (current != s) {
+            if (length == reversed.length) {
+                reversed = Arrays.copyOf(reversed, length * 2);
+            }
+            reversed[length++] = areaIds[current];
+            current = chunk.get(offset + current);
+            if (current == NO_PREDECESSOR || length > areaIds.length) {
+                return null;
+            }
+        }
+
+        int[] path = new int[length+1];
+        path[0] = areaIds[s];
+        for (int i=0; i<length; i++) {
+            path[i+1] = reversed[length-1-i];
+        }
+        return path;
+    }
+
+    /**
+     * Open an existing database, memory-mapping its trees.
+     *
+     * @param file database file.
+     * @param model world model that the database must correspond to.
+     * @param searchClass search class that must have been used to build the database.
+     * @return the opened database, or <em>null</em> if it does not match the given map or
+     * search class.
+     * @throws IOException if the file can not be read.
+     */
+    public static ShortestPathTrees open(File file, StandardWorldModel model, String searchClass)
+            throws IOException {
+        final int[] areaIds;
+        final long headerSize;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Logger.warn("File {} is not a shortest path trees database.", file);
+                return null;
+            }
+            final long fingerprint = in.readLong();
+            final String fileSearchClass = in.readUTF();
+            if (fingerprint != getFingerprint(model) || !fileSearchClass.equals(searchClass)) {
+                Logger.warn("Paths database {} was built for a different map or search class ({}).",
+                        file, fileSearchClass);
+                return null;
+            }
+            areaIds = new int[in.readInt()];
+            for (int i=0; i<areaIds.length; i++) {
+                areaIds[i] = in.readInt();
+            }
+            headerSize = getHeaderSize(fileSearchClass, areaIds.length);
+        }
+
+        final int n = areaIds.length;
+        final int rowsPerChunk = (int)Math.max(1, Math.min(n, MAX_CHUNK_BYTES / (4L * Math.max(1, n))));
+        final int nChunks = n == 0 ? 0 : (n + rowsPerChunk - 1) / rowsPerChunk;
+        IntBuffer[] chunks = new IntBuffer[nChunks];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            for (int c=0; c<nChunks; c++) {
+                final int rows = Math.min(rowsPerChunk, n - c * rowsPerChunk);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        headerSize + 4L * c * rowsPerChunk * n, 4L * rows * n);
+                chunks[c] = buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+            }
+        }
+
+        Logger.info("Mapped shortest path trees for {} areas from {}", n, file);
+        return new ShortestPathTrees(areaIds, chunks, rowsPerChunk);
+    }
+
+    /**
+     * Build the shortest path trees of the given world and store them in a file.
+     *
+     * @param file database file to create.
+     * @param model world model.
+     * @param searchClass configured search class, stored in the header.
+     * @throws IOException if the file can not be written.
+     */
+    public static void build(File file, final StandardWorldModel model, String searchClass)
+            throws IOException {
+        final List<StandardEntity> areas = getSortedAreas(model);
+        final int n = areas.size();
+        final int[] areaIds = getAreaIds(areas);
+        final int[][] graph = buildGraph(areas, model, searchClass);
+        final int[] offsets = graph[0], adj = graph[1], w = graph[2];
+        final long start = System.currentTimeMillis();
+
+        // Write the header and then fill the rows concurrently
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(getFingerprint(model));
+            out.writeUTF(searchClass);
+            out.writeInt(n);
+            for (int id : areaIds) {
+                out.writeInt(id);
+            }
+        }
+        final long headerSize = getHeaderSize(searchClass, n);
+
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+            final FileChannel channel = raf.getChannel();
+            raf.setLength(headerSize + 4L * n * n);
+
+            final AtomicInteger done = new AtomicInteger();
+            final IOException[] failure = new IOException[1];
+            ExecutorService service = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors());
+            for (int source = 0; source < n; source++) {
+                final int s = source;
+                service.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int[] predecessors = computeTree(s, offsets, adj, w);
+                        ByteBuffer buffer = ByteBuffer.allocate(4 * n).order(ByteOrder.BIG_ENDIAN);
+                        buffer.asIntBuffer().put(predecessors);
+                        try {
+                            long position = headerSize + 4L * s * n;
+                            while (buffer.hasRemaining()) {
+                                position += channel.write(buffer, position);
+                            }
+                        } catch (IOException ex) {
+                            synchronized (failure) {
+                                failure[0] = ex;
+                            }
+                        }
+                        final int count = done.incrementAndGet();
+                        if (count % 100 == 0 || count == n) {
+                            Logger.info("Done with {} of {} shortest path trees ({} s)", count, n,
+                                    (System.currentTimeMillis() - start) / 1000);
+                        }
+                    }
+                });
+            }
+
+            service.shutdown();
+            try {
+                service.awaitTermination(1, TimeUnit.DAYS);
+            } catch (InterruptedException ex) {
+                Logger.error(ex);
+                throw new RuntimeException(ex);
+            }
+            synchronized (failure) {
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Unable to move " + tmpFile + " to " + file);
+        }
+        Logger.info("Built {} shortest path trees in {} ms", n, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Get the areas of the given world, sorted by id so that dense area indices do not depend on
+     * the world's iteration order.
+     *
+     * @param model world model.
+     * @return sorted list of roads and buildings.
+     */
+    public static List<StandardEntity> getSortedAreas(StandardWorldModel model) {
+        List<StandardEntity> areas = new ArrayList<>(model.getEntitiesOfType(
+                StandardEntityURN.ROAD, StandardEntityURN.BUILDING));
+        Collections.sort(areas, new Comparator<StandardEntity>() {
+            @Override
+            public int compare(StandardEntity o1, StandardEntity o2) {
+                return Integer.compare(o1.getID().getValue(), o2.getID().getValue());
+            }
+        });
+        return areas;
+    }
+
+    public static int[] getAreaIds(List<StandardEntity> areas) {
+        final int[] areaIds = new int[areas.size()];
+        for (int i=0; i<areaIds.length; i++) {
+            areaIds[i] = areas.get(i).getID().getValue();
+        }
+        return areaIds;
+    }
+
+    /**
+     * Build the adjacency of the given areas in compressed form.
+     * <p/>
+     * Edges are weighted by the distance between areas, as in {@link RSLBench.Search.AStar}, or
+     * have unit weights if the search class is breadth-first search.
+     *
+     * @param areas areas of the world, whose positions in the list are their indices.
+     * @param model world model.
+     * @param searchClass configured search class.
+     * @return the neighbor offsets of each area, the neighbors and the weights of each edge.
+     */
+    public static int[][] buildGraph(List<StandardEntity> areas, StandardWorldModel model,
+            String searchClass) {
+        final int n = areas.size();
+        final TIntIntHashMap index = buildIndex(getAreaIds(areas));
+        final int[] offsets = new int[n+1];
+        int[] adjacency = new int[n*4];
+        int[] weights = new int[n*4];
+        final boolean unweighted = searchClass.equals(BreadthFirstSearch.class.getSimpleName());
+        for (int i=0; i<n; i++) {
+            Area area = (Area)areas.get(i);
+            int k = offsets[i];
+            for (EntityID neighbor : area.getNeighbours()) {
+                final int j = index.get(neighbor.getValue());
+                if (j < 0) {
+                    continue;
+                }
+                if (k == adjacency.length) {
+                    adjacency = Arrays.copyOf(adjacency, k * 2);
+                    weights = Arrays.copyOf(weights, k * 2);
+                }
+                adjacency[k] = j;
+                weights[k] = unweighted ? 1 : model.getDistance(area.getID(), neighbor);
+                k++;
+            }
+            offsets[i+1] = k;
+        }
+        return new int[][]{offsets, adjacency, weights};
+    }
+
+    /**
+     * Computes the predecessor of each area in the shortest paths from the given source.
+     * <p/>
+     * The source is its own predecessor, and unreachable areas have {@link #NO_PREDECESSOR}.
+     */
+    public static int[] computeTree(int source, int[] offsets, int[] adjacency, int[] weights) {
+        final int n = offsets.length - 1;
+        int[] predecessors = new int[n];
+        Arrays.fill(predecessors, NO_PREDECESSOR);
+        long[] distances = new long[n];
+        Arrays.fill(distances, Long.MAX_VALUE);
+        boolean[] closed = new boolean[n];
+
+        // Binary heap of (distance, area) entries, allowing duplicates
+        long[] keys = new long[Math.max(16, n)];
+        int[] nodes = new int[keys.length];
+        int size = 0;
+
+        distances[source] = 0;
+        predecessors[source] = source;
+        keys[0] = 0;
+        nodes[0] = source;
+        size = 1;
+        while (size > 0) {
+            final int u = nodes[0];
+            final long du = keys[0];
+            size--;
+            siftDown(keys, nodes, size, keys[size], nodes[size]);
+            if (closed[u] || du > distances[u]) {
+                continue;
+            }
+            closed[u] = true;
+
+            for (int k=offsets[u]; k<offsets[u+1]; k++) {
+                final int v = adjacency[k];
+                final long dv = du + weights[k];
+                if (!closed[v] && dv < distances[v]) {
+                    distances[v] = dv;
+                    predecessors[v] = u;
+                    if (size == keys.length) {
+                        keys = Arrays.copyOf(keys, size * 2);
+                        nodes = Arrays.copyOf(nodes, size * 2);
+                    }
+                    // Sift up
+                    int i = size++;
+                    while (i > 0) {
+                        final int parent = (i - 1) >>> 1;
+                        if (keys[parent] <= dv) {
+                            break;
+                        }
+                        keys[i] = keys[parent];
+                        nodes[i] = nodes[parent];
+                        i = parent;
+                    }
+                    keys[i] = dv;
+                    nodes[i] = v;
+                }
+            }
+        }
+
+        return predecessors;
+    }
+
+    /**
+     * Walk back a shortest path tree from the given destination to its source.
+     *
+     * @return ids of the areas in the path, including both end points, or <em>null</em> if the
+     * destination is not reachable.
+     */
+    static int[] getTreePath(int[] predecessors, int[] areaIds, int source, int target) {
+        int length = 1;
+        for (int current = target; current != source; current = predecessors[current]) {
+            if (predecessors[current] == NO_PREDECESSOR) {
+                return null;
+            }
+            length++;
+        }
+
+        int[] path = new int[length];
+        int current = target;
+        for (int k = length-1; k >= 0; k--) {
+            path[k] = areaIds[current];
+            current = predecessors[current];
+        }
+        return path;
+    }
+
+    private static void siftDown(long[] keys, int[] nodes, int size, long key, int node) {
+        if (size == 0) {
+            return;
+        }
+        int i = 0;
+        while (true) {
+            int child = 2*i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child+1 < size && keys[child+1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= key) {
+                break;
+            }
+            keys[i] = keys[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        keys[i] = key;
+        nodes[i] = node;
+    }
+
+    public static TIntIntHashMap buildIndex(int[] areaIds) {
+        TIntIntHashMap index = new TIntIntHashMap(Math.max(10, areaIds.length), 0.5f, -1, -1);
+        for (int i=0; i<areaIds.length; i++) {
+            index.put(areaIds[i], i);
+        }
+        return index;
+    }
+
+    private static long getHeaderSize(String searchClass, int nAreas) throws IOException {
+        // magic + version + fingerprint + search class + number of areas + area ids
+        ByteBuffer utf = ByteBuffer.wrap(searchClass.getBytes("UTF-8"));
+        return 4 + 4 + 8 + (2 + utf.remaining()) + 4 + 4L * nAreas;
+    }
+
+    /**
+     * Computes a fingerprint of the road network of the given world, so that databases are not
+     * reused across different maps.
+     *
+     * @param model world model.
+     * @return hash of the ids and neighbors of all the areas.
+     */
+    public static long getFingerprint(StandardWorldModel model) {
+        List<StandardEntity> areas = getSortedAreas(model);
+
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (StandardEntity entity : areas) {
+            hash = (hash ^ entity.getID().getValue()) * 0x100000001b3L;
+            for (EntityID neighbor : ((Area)entity).getNeighbours()) {
+                hash = (hash ^ neighbor.getValue()) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+}
@@ -4,12 +4,18 @@
  */
 package RSLBench.Helpers.Utility;
 
+import RSLBench.Constants;
+import java.util.List;
 import rescuecore2.config.Config;
 import rescuecore2.standard.entities.StandardWorldModel;
 import rescuecore2.worldmodel.EntityID;
 
 /**
  * Skeletal implementation of a utility function.
+ * <p/>
+ * Utility functions may be evaluated concurrently by several threads, so
+ * implementations should read any configuration values they need in
+ * {@link #setConfig(Config)} instead of on every evaluation.
  *
  * @author Marc Pujol <mpujol@iiia.csic.es>
  */
@@ -17,6 +23,15 @@ public abstract class AbstractUtilityFunction implements UtilityFunction {
     protected StandardWorldModel world;
     protected Config config;
 
+    /** Trade-off between target utility and distance. */
+    protected double tradeoff;
+
+    /** Area that a single fire brigade can cover. */
+    protected double fireBrigadeArea;
+
+    /** Seed of the tie-breaking noise, drawn once per utility function. */
+    private long noiseSeed;
+
     @Override
     public void setWorld(StandardWorldModel world) {
         this.world = world;
@@ -25,6 +40,29 @@ public abstract class AbstractUtilityFunction implements UtilityFunction {
     @Override
     public void setConfig(Config config) {
         this.config = config;
+        tradeoff = config.getFloatValue(Constants.KEY_UTIL_TRADEOFF);
+        fireBrigadeArea = config.getFloatValue(Constants.KEY_AREA_COVERED_BY_FIRE_BRIGADE);
+        noiseSeed = config.getRandom().nextLong();
+    }
+
+    /**
+     * Get a small pseudo-random value to break ties between the given agent and target.
+     * <p/>
+     * The value only depends on the pair and on a seed drawn when the configuration is set,
+     * so it is the same regardless of the order (or thread) in which pairs are evaluated.
+     *
+     * @param agent agent being evaluated.
+     * @param target target being evaluated.
+     * @return uniformly distributed value in [0, 1).
+     */
+    protected double getNoise(EntityID agent, EntityID target) {
+        // SplitMix64 finalizer over the combined ids
+        long z = noiseSeed + agent.getValue() * 0x9E3779B97F4A7C15L
+                + target.getValue() * 0xC2B2AE3D27D4EB4FL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
     }
 
     @Override
@@ -32,4 +70,30 @@ public abstract class AbstractUtilityFunction implements UtilityFunction {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This default implementation just evaluates each fire separately.
+     */
+    @Override
+    public void getFireUtilities(EntityID fireAgent, List<EntityID> fires, int[] indices,
+            double[] row) {
+        for (int k=0; k<indices.length; k++) {
+            row[k] = getFireUtility(fireAgent, fires.get(indices[k]));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This default implementation just evaluates each blockade separately.
+     */
+    @Override
+    public void getPoliceUtilities(EntityID policeAgent, List<EntityID> blockades, int[] indices,
+            double[] row) {
+        for (int k=0; k<indices.length; k++) {
+            row[k] = getPoliceUtility(policeAgent, blockades.get(indices[k]));
+        }
+    }
+
 }
@@ -4,7 +4,6 @@
  */
 package RSLBench.Helpers.Utility;
 
-import RSLBench.Constants;
 import RSLBench.Helpers.Distance;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,7 +32,6 @@ public class FirstUtilityFunction extends AbstractUtilityFunction {
         }
 
         double distance = Distance.humanToBuilding(agent, target, world);
-        double tradeoff = config.getFloatValue(Constants.KEY_UTIL_TRADEOFF);
         utility = utility / Math.pow(distance * tradeoff, 2.0);
         return utility;
     }
@@ -43,7 +41,7 @@ public class FirstUtilityFunction extends AbstractUtilityFunction {
         Building b = (Building) world.getEntity(target);
         
         int area = b.getTotalArea();
-        double neededAgents = Math.ceil(area / config.getFloatValue(Constants.KEY_AREA_COVERED_BY_FIRE_BRIGADE));
+        double neededAgents = Math.ceil(area / fireBrigadeArea);
 
         if (b.getFieryness() == 1) {
             neededAgents *= 1.5;
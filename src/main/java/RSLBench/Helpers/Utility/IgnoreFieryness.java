@@ -4,7 +4,6 @@
  */
 package RSLBench.Helpers.Utility;
 
-import RSLBench.Constants;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import rescuecore2.standard.entities.Building;
@@ -40,7 +39,7 @@ public class IgnoreFieryness extends AbstractUtilityFunction {
         }
         
         int area = b.getTotalArea();
-        double neededAgents = Math.ceil(area / config.getFloatValue(Constants.KEY_AREA_COVERED_BY_FIRE_BRIGADE));
+        double neededAgents = Math.ceil(area / fireBrigadeArea);
         return (int) Math.round(neededAgents);
     }
     
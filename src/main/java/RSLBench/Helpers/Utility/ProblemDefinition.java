@@ -3,20 +3,25 @@ package RSLBench.Helpers.Utility;
 import RSLBench.Assignment.Assignment;
 import RSLBench.Constants;
 import RSLBench.Helpers.PathCache.PathDB;
-import RSLBench.Search.SearchResults;
+import RSLBench.Search.BlockadeTree;
+import gnu.trove.map.hash.TObjectIntHashMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import rescuecore2.config.Config;
 import rescuecore2.misc.Pair;
+import rescuecore2.standard.entities.Area;
 import rescuecore2.standard.entities.Blockade;
 import rescuecore2.standard.entities.Human;
 
@@ -40,10 +45,33 @@ public class ProblemDefinition {
     private StandardWorldModel world;
     private Config config;
 
-    // Indexes entities to indices
-    private Map<EntityID, Integer> id2idx = new HashMap<>();
-    private double[][] fireUtilityMatrix;
-    private double[][] policeUtilityMatrix;
+    // Indexes entities to their (dense) position within their respective lists
+    private TObjectIntHashMap<EntityID> fireAgentIdx;
+    private TObjectIntHashMap<EntityID> fireIdx;
+    private TObjectIntHashMap<EntityID> policeAgentIdx;
+    private TObjectIntHashMap<EntityID> blockadeIdx;
+    private UtilityStorage fireUtilities;
+    // Compressed sparse rows of the fire utilities, used instead of the matrix in sparse mode
+    private int[] fireUtilityRows;
+    private int[] fireUtilityColumns;
+    private double[] fireUtilityValues;
+    private UtilityStorage policeUtilities;
+    private double hysteresis;
+
+    // Number of agents required by each fire, and penalty for each agent in excess of that
+    private int[] requiredAgents;
+    private double[] excessPenalties;
+    private double penaltyK, penaltyAlpha;
+
+    // Previous step's problem and world changes since then, only set while building
+    private ProblemDefinition previous;
+    private WorldChanges changes;
+    private boolean reuseBlockedPaths;
+    private BlockadeTree blockadeTree;
+    private long blockedPathsTime;
+    private long pathsHits, pathsMisses, pathsEvictions, pathsLookupTime, pathsCacheBytes;
+    private final AtomicLong recomputedCells = new AtomicLong();
+    private final AtomicLong reusedCells = new AtomicLong();
 
     // Assignment chosen in the last iteration
     private Assignment lastAssignment;
@@ -65,6 +93,26 @@ public class ProblemDefinition {
             ArrayList<EntityID> fires, ArrayList<EntityID> policeAgents,
             ArrayList<EntityID> blockades, Assignment lastAssignment,
             StandardWorldModel world) {
+        this(config, fireAgents, fires, policeAgents, blockades, lastAssignment, world, null, null);
+    }
+
+    /**
+     * Creates a problem definition, reusing the utilities and blocked paths of
+     * the previous step's problem that are not affected by the given changes.
+     *
+     * @param fireAgents a list of fire brigade agents
+     * @param fires a list of fires
+     * @param policeAgents a list of police agents
+     * @param blockades a list of blockades
+     * @param lastAssignment the assignment computed in the last iteration
+     * @param world the model of the world
+     * @param previous problem of the previous step, or <em>null</em> to build everything anew
+     * @param changes world changes since the previous problem was built
+     */
+    public ProblemDefinition(Config config, ArrayList<EntityID> fireAgents,
+            ArrayList<EntityID> fires, ArrayList<EntityID> policeAgents,
+            ArrayList<EntityID> blockades, Assignment lastAssignment,
+            StandardWorldModel world, ProblemDefinition previous, WorldChanges changes) {
         this.fireAgents = fireAgents;
         this.fires = fires;
         this.policeAgents = policeAgents;
@@ -78,10 +126,28 @@ public class ProblemDefinition {
         pathDB = PathDB.getInstance();
 
         long initialTime = System.currentTimeMillis();
-        utilityFunction = UtilityFactory.buildFunction();
-        utilityFunction.setWorld(world);
-        utilityFunction.setConfig(config);
+        if (previous != null && changes != null) {
+            // Keep the same function so that reused and recomputed utilities are consistent
+            this.previous = previous;
+            this.changes = changes;
+            utilityFunction = previous.utilityFunction;
+        } else {
+            utilityFunction = UtilityFactory.buildFunction();
+            utilityFunction.setWorld(world);
+            utilityFunction.setConfig(config);
+        }
 
+        fireAgentIdx = buildIndices(fireAgents);
+        fireIdx = buildIndices(fires);
+        policeAgentIdx = buildIndices(policeAgents);
+        blockadeIdx = buildIndices(blockades);
+        allFires = range(fires.size());
+        allFireAgents = range(fireAgents.size());
+        allBlockades = range(blockades.size());
+        allPoliceAgents = range(policeAgents.size());
+
+        hysteresis = config.getFloatValue(Constants.KEY_UTIL_HYSTERESIS);
+        computeFireRequirements();
         buildFirefightersUtilityMatrix(lastAssignment);
         buildPoliceUtilityMatrix(lastAssignment);
 
@@ -91,13 +157,110 @@ public class ProblemDefinition {
         }
 
         // Compute blocked targets... only if there actually are some blockades in the simulation!
+        final long hits = pathDB.getCacheHits();
+        final long misses = pathDB.getCacheMisses();
+        final long evictions = pathDB.getCacheEvictions();
+        final long lookupTime = pathDB.getLookupTime();
         if (blockades.size() > 0) {
+            final long blockedStart = System.currentTimeMillis();
+            reuseBlockedPaths = this.previous != null && !hasNewBlockades();
+            if (config.getBooleanValue(Constants.KEY_PROBLEM_BLOCKADE_TREE, false)) {
+                blockadeTree = new BlockadeTree(world, PathDB.getSearchClass());
+            }
             computeBlockedFireAgents();
             computeBlockedPoliceAgents();
+            blockadeTree = null;
+            blockedPathsTime = System.currentTimeMillis() - blockedStart;
         }
+        pathsHits = pathDB.getCacheHits() - hits;
+        pathsMisses = pathDB.getCacheMisses() - misses;
+        pathsEvictions = pathDB.getCacheEvictions() - evictions;
+        pathsLookupTime = pathDB.getLookupTime() - lookupTime;
+        pathsCacheBytes = pathDB.getCacheBytes();
+
+        // Do not keep a chain of past problems alive
+        this.previous = null;
+        this.changes = null;
 
         long elapsedTime = System.currentTimeMillis() - initialTime;
-        Logger.debug("Problem definition initialized in {}ms.", elapsedTime);
+        Logger.debug("Problem definition initialized in {}ms ({} utilities recomputed, {} reused, {}ms computing blocked paths).",
+                elapsedTime, recomputedCells.get(), reusedCells.get(), blockedPathsTime);
+        Logger.info("Utilities take {} KB ({} KB heap used).", getUtilityBytes() / 1024,
+                (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024);
+    }
+
+    /**
+     * Get the time spent computing which agents are blocked from reaching their targets.
+     *
+     * @return time spent computing blocked paths (in milliseconds).
+     */
+    public long getBlockedPathsTime() {
+        return blockedPathsTime;
+    }
+
+    /**
+     * Get the number of path queries answered from the paths database cache when building this
+     * problem.
+     *
+     * @return number of cache hits.
+     */
+    public long getPathsHits() {
+        return pathsHits;
+    }
+
+    /**
+     * Get the number of path queries that had to be read from the paths database when building
+     * this problem.
+     *
+     * @return number of cache misses.
+     */
+    public long getPathsMisses() {
+        return pathsMisses;
+    }
+
+    /**
+     * Get the number of paths evicted from the paths database cache when building this problem.
+     *
+     * @return number of cache evictions.
+     */
+    public long getPathsEvictions() {
+        return pathsEvictions;
+    }
+
+    /**
+     * Get the memory taken by the paths database cache once this problem was built.
+     *
+     * @return size of the cache (in bytes).
+     */
+    public long getPathsCacheBytes() {
+        return pathsCacheBytes;
+    }
+
+    /**
+     * Get the time spent looking up paths in the paths database when building this problem.
+     *
+     * @return lookup time (in milliseconds).
+     */
+    public long getPathsLookupTime() {
+        return pathsLookupTime / 1000000;
+    }
+
+    /**
+     * Get the number of utilities that have been computed when building this problem.
+     *
+     * @return number of utilities computed.
+     */
+    public long getRecomputedCells() {
+        return recomputedCells.get();
+    }
+
+    /**
+     * Get the number of utilities that have been reused from the previous step's problem.
+     *
+     * @return number of utilities reused.
+     */
+    public long getReusedCells() {
+        return reusedCells.get();
     }
 
     /**
@@ -117,6 +280,23 @@ public class ProblemDefinition {
         return config;
     }
 
+    private static TObjectIntHashMap<EntityID> buildIndices(List<EntityID> ids) {
+        TObjectIntHashMap<EntityID> index = new TObjectIntHashMap<>(
+                Math.max(10, ids.size()), 0.5f, -1);
+        for (int i=0; i<ids.size(); i++) {
+            index.put(ids.get(i), i);
+        }
+        return index;
+    }
+
+    private static int[] range(int n) {
+        int[] result = new int[n];
+        for (int i=0; i<n; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+
     /**
      * Build the firefighters (fire brigades to fires) utility matrix.
      *
@@ -125,125 +305,493 @@ public class ProblemDefinition {
      * problem repoted utilities must stay consistent.
      */
     private void buildFirefightersUtilityMatrix(Assignment lastAssignment) {
-        final int nAgents = fireAgents.size();
-        final int nTargets = fires.size();
-        fireUtilityMatrix = new double[nAgents][nTargets];
-        for (int i=0; i<nAgents; i++) {
-            final EntityID agent = fireAgents.get(i);
-            id2idx.put(agent, i);
+        final boolean sparse = config.getBooleanValue(Constants.KEY_PROBLEM_PRUNE)
+                && config.getBooleanValue(Constants.KEY_PROBLEM_SPARSE, false);
+        if (!sparse) {
+            fireUtilities = UtilityStorage.build(getStorageType(), fireAgents.size(), fires.size());
+            getPool().invoke(new UtilityRowsTask(fireAgents, fires, fireUtilities, null,
+                    lastAssignment, false, 0, fireAgents.size()));
+            return;
+        }
 
-            for (int j=0; j<nTargets; j++) {
-                final EntityID target = fires.get(j);
-                if (i == 0) {
-                    id2idx.put(target, j);
-                }
+        // Only the utilities towards the closest fires of each agent are computed
+        final int nCandidates = config.getIntValue(Constants.KEY_PROBLEM_SPARSE_CANDIDATES,
+                DEFAULT_SPARSE_CANDIDATES);
+        UtilityStorage values = UtilityStorage.build(UtilityStorage.TYPE_ROWS,
+                fireAgents.size(), fires.size());
+        int[][] columns = new int[fireAgents.size()][];
+        for (int i=0; i<columns.length; i++) {
+            columns[i] = getClosestFires(fireAgents.get(i), nCandidates);
+        }
+        getPool().invoke(new UtilityRowsTask(fireAgents, fires, values, columns,
+                lastAssignment, false, 0, fireAgents.size()));
 
-                double utility = utilityFunction.getFireUtility(agent, target);
+        // Pack the rows in compressed sparse row form
+        fireUtilityRows = new int[fireAgents.size()+1];
+        for (int i=0; i<columns.length; i++) {
+            fireUtilityRows[i+1] = fireUtilityRows[i] + columns[i].length;
+        }
+        fireUtilityColumns = new int[fireUtilityRows[columns.length]];
+        fireUtilityValues = new double[fireUtilityColumns.length];
+        for (int i=0; i<columns.length; i++) {
+            System.arraycopy(columns[i], 0, fireUtilityColumns, fireUtilityRows[i], columns[i].length);
+            for (int k=0; k<columns[i].length; k++) {
+                fireUtilityValues[fireUtilityRows[i] + k] = values.get(i, k);
+            }
+        }
+        Logger.debug("Stored {} of {} fire utilities.", fireUtilityValues.length,
+                (long)fireAgents.size() * fires.size());
+    }
 
-                // Apply hysteresis factor if configured
-                if (lastAssignment.getAssignment(agent).equals(target)) {
-                    utility *= config.getFloatValue(Constants.KEY_UTIL_HYSTERESIS);
-                }
+    /**
+     * Get the (sorted) indices of the fires closest to the given agent.
+     */
+    private int[] getClosestFires(EntityID agent, int n) {
+        final int nFires = fires.size();
+        if (n >= nFires) {
+            return range(nFires);
+        }
 
-                // Set a cap on max utility
-                if (Double.isInfinite(utility)) {
-                    utility = 1e15;
-                }
+        double[] distances = new double[nFires];
+        for (int j=0; j<nFires; j++) {
+            distances[j] = -world.getDistance(agent, fires.get(j));
+        }
+        TargetHeap heap = new TargetHeap(distances, null, 0, nFires);
+        int[] result = new int[n];
+        for (int k=0; k<n; k++) {
+            result[k] = heap.pop();
+        }
+        Arrays.sort(result);
+        return result;
+    }
 
-                fireUtilityMatrix[i][j] = utility;
+    private void buildPoliceUtilityMatrix(Assignment lastAssignment) {
+        policeUtilities = UtilityStorage.build(getStorageType(), policeAgents.size(), blockades.size());
+        getPool().invoke(new UtilityRowsTask(policeAgents, blockades, policeUtilities, null,
+                lastAssignment, true, 0, policeAgents.size()));
+    }
+
+    /** Maximum utility value, assigned to infinite utilities */
+    private static final double UTILITY_CAP = 1e15;
+
+    /** Default number of candidate fires per agent in sparse mode */
+    private static final int DEFAULT_SPARSE_CANDIDATES = 16;
+
+    private String getStorageType() {
+        return config.getValue(Constants.KEY_PROBLEM_STORAGE, UtilityStorage.TYPE_ROWS);
+    }
+
+    /**
+     * Get the (approximate) memory used to store the utilities of this problem.
+     *
+     * @return number of bytes used by the utilities.
+     */
+    public long getUtilityBytes() {
+        long bytes = policeUtilities.getBytes();
+        if (fireUtilities != null) {
+            bytes += fireUtilities.getBytes();
+        } else {
+            bytes += 4L * (fireUtilityRows.length + fireUtilityColumns.length)
+                    + 8L * fireUtilityValues.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Pool used to build the utility matrices, shared by all problem definitions. It is replaced
+     * whenever a problem is configured with a different number of threads (its idle workers
+     * terminate by themselves).
+     */
+    private static ForkJoinPool pool;
+
+    private ForkJoinPool getPool() {
+        int nThreads = config.getIntValue(Constants.KEY_PROBLEM_THREADS, 0);
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        synchronized (ProblemDefinition.class) {
+            if (pool == null || pool.getParallelism() != nThreads) {
+                pool = new ForkJoinPool(nThreads);
             }
+            return pool;
         }
     }
 
-    private void buildPoliceUtilityMatrix(Assignment lastAssignment) {
-        final int nAgents = policeAgents.size();
-        final int nTargets = blockades.size();
-        policeUtilityMatrix = new double[nAgents][nTargets];
-        for (int i=0; i<nAgents; i++) {
-            final EntityID agent = policeAgents.get(i);
-            id2idx.put(agent, i);
+    /**
+     * Fills a range of rows of a utility matrix, splitting the range in halves
+     * until single rows are left.
+     * <p/>
+     * If the columns of each row are given, only the utilities towards those
+     * targets are computed.
+     */
+    private class UtilityRowsTask extends RecursiveAction {
+        private final List<EntityID> agents;
+        private final List<EntityID> targets;
+        private final UtilityStorage matrix;
+        private final int[][] columns;
+        private final Assignment lastAssignment;
+        private final boolean police;
+        private final int from;
+        private final int to;
+
+        public UtilityRowsTask(List<EntityID> agents, List<EntityID> targets, UtilityStorage matrix,
+                int[][] columns, Assignment lastAssignment, boolean police, int from, int to)
+        {
+            this.agents = agents;
+            this.targets = targets;
+            this.matrix = matrix;
+            this.columns = columns;
+            this.lastAssignment = lastAssignment;
+            this.police = police;
+            this.from = from;
+            this.to = to;
+        }
 
-            for (int j=0; j<nTargets; j++) {
-                final EntityID target = blockades.get(j);
-                if (i == 0) {
-                    id2idx.put(target, j);
-                }
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(
+                    new UtilityRowsTask(agents, targets, matrix, columns, lastAssignment, police, from, mid),
+                    new UtilityRowsTask(agents, targets, matrix, columns, lastAssignment, police, mid, to));
+                return;
+            }
+            if (to > from) {
+                matrix.setRow(from, buildRow(agents.get(from), columns == null ? null : columns[from]));
+            }
+        }
 
-                double utility = utilityFunction.getPoliceUtility(agent, target);
+        private double[] buildRow(EntityID agent, int[] rowColumns) {
+            final int nTargets = rowColumns == null ? targets.size() : rowColumns.length;
+            final EntityID lastTarget = lastAssignment.getAssignment(agent);
+            double[] row = new double[nTargets];
+
+            // Row of this agent in the previous problem, if it can be reused at all
+            int previousRow = -1;
+            EntityID previousLastTarget = null;
+            if (previous != null && !changes.hasMoved(agent)) {
+                previousRow = police ? previous.getPoliceAgentIndex(agent)
+                        : previous.getFireAgentIndex(agent);
+                if (previousRow >= 0) {
+                    previousLastTarget = previous.getLastAssignment().getAssignment(agent);
+                }
+            }
 
-                // Apply hysteresis factor if configured
-                if (lastAssignment.getAssignment(agent).equals(target)) {
-                    utility *= config.getFloatValue(Constants.KEY_UTIL_HYSTERESIS);
+            // First reuse what can be reused, and collect the remaining targets
+            int[] pending = new int[nTargets];
+            int nPending = 0;
+            for (int c=0; c<nTargets; c++) {
+                final EntityID target = targets.get(rowColumns == null ? c : rowColumns[c]);
+
+                double utility = Double.NaN;
+                if (previousRow >= 0 && !target.equals(previousLastTarget)) {
+                    final int k = police ? previous.getBlockadeIndex(target)
+                            : previous.getFireIndex(target);
+                    final boolean changed = police ? changes.hasBlockadeChanged(target)
+                            : changes.hasFireChanged(target);
+                    if (k >= 0 && !changed) {
+                        final double previousUtility = police
+                                ? previous.policeUtilities.get(previousRow, k)
+                                : previous.getStoredFireUtility(previousRow, k);
+                        // Capped values can not be reused because the hysteresis may apply now
+                        // (compared in single precision in case they were stored as floats)
+                        if (!Double.isNaN(previousUtility) && previousUtility < (float)UTILITY_CAP) {
+                            utility = previousUtility;
+                        }
+                    }
                 }
 
-                // Set a cap on max utility
-                if (Double.isInfinite(utility)) {
-                    utility = 1e15;
+                if (Double.isNaN(utility)) {
+                    pending[nPending++] = c;
+                } else {
+                    row[c] = adjustUtility(utility, target, lastTarget);
                 }
+            }
 
-                policeUtilityMatrix[i][j] = utility;
+            // Then evaluate the remaining ones in a single batch
+            if (nPending > 0) {
+                int[] indices = new int[nPending];
+                for (int k=0; k<nPending; k++) {
+                    indices[k] = rowColumns == null ? pending[k] : rowColumns[pending[k]];
+                }
+                double[] values = new double[nPending];
+                if (police) {
+                    utilityFunction.getPoliceUtilities(agent, targets, indices, values);
+                } else {
+                    utilityFunction.getFireUtilities(agent, targets, indices, values);
+                }
+                for (int k=0; k<nPending; k++) {
+                    row[pending[k]] = adjustUtility(values[k], targets.get(indices[k]), lastTarget);
+                }
             }
+
+            reusedCells.addAndGet(nTargets - nPending);
+            recomputedCells.addAndGet(nPending);
+            return row;
+        }
+    }
+
+    /**
+     * Applies the hysteresis factor and the utility cap to a raw utility value.
+     */
+    private double adjustUtility(double utility, EntityID target, EntityID lastTarget) {
+        // Apply hysteresis factor if configured
+        if (target.equals(lastTarget)) {
+            utility *= hysteresis;
+        }
+
+        // Set a cap on max utility
+        if (Double.isInfinite(utility)) {
+            utility = UTILITY_CAP;
         }
+
+        return utility;
     }
 
+    /** Value stored for the pairs that are not blocked by any blockade. */
+    public static final int NOT_BLOCKED = -1;
+
     /**
-     * Holds the precomputed map from <em>(agent, target)</em> to <em>blockade</em> preventing
-     * that agent from reaching that target.
+     * Holds the precomputed (index of the) blockade preventing each agent from reaching each
+     * target, or {@link #NOT_BLOCKED}. Entry <em>(i, j)</em> is at position
+     * <em>i*nTargets + j</em>. These are <em>null</em> if there are no blockades at all.
      */
-    private HashMap<Pair<EntityID, EntityID>, EntityID> blockedFireAgents = new HashMap<>();
-    private HashMap<Pair<EntityID, EntityID>, EntityID> blockedPoliceAgents = new HashMap<>();
+    private int[] fireBlockers;
+    private int[] policeBlockers;
 
+    /**
+     * Inverted index of the (fire agent, fire) pairs blocked by each blockade, in compressed
+     * form: the pairs blocked by blockade b are at positions
+     * <em>blockedPairsOffsets[b] ... blockedPairsOffsets[b+1]-1</em> of the pair arrays.
+     */
+    private int[] blockedPairsOffsets;
+    private int[] blockedPairAgents;
+    private int[] blockedPairFires;
+
+    /**
+     * Get the (fire agent, fire) pairs where the agent is blocked by the given blockade.
+     *
+     * @param blockade blockade to check.
+     * @return collection of pairs blocked by this blockade.
+     */
     public Collection<Pair<EntityID, EntityID>> getFireAgentsBlockedByBlockade(EntityID blockade) {
-        Collection<Pair<EntityID, EntityID>> result = new HashSet<>();
+        final int b = getBlockadeIndex(blockade);
+        final int n = getNumBlockedPairs(b);
+        Collection<Pair<EntityID, EntityID>> result = new ArrayList<>(n);
+        for (int k=0; k<n; k++) {
+            result.add(new Pair<>(fireAgents.get(getBlockedFireAgent(b, k)),
+                    fires.get(getBlockedFire(b, k))));
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of (fire agent, fire) pairs where the agent is blocked by the given blockade.
+     *
+     * @param blockade index of the blockade.
+     * @return number of pairs blocked by this blockade.
+     */
+    public int getNumBlockedPairs(int blockade) {
+        if (blockedPairsOffsets == null || blockade < 0) {
+            return 0;
+        }
+        return blockedPairsOffsets[blockade+1] - blockedPairsOffsets[blockade];
+    }
+
+    /**
+     * Get the fire agent of the k-th pair blocked by the given blockade.
+     *
+     * @param blockade index of the blockade.
+     * @param k index of the pair, lower than {@link #getNumBlockedPairs(int)}.
+     * @return index of the blocked fire agent.
+     */
+    public int getBlockedFireAgent(int blockade, int k) {
+        return blockedPairAgents[blockedPairsOffsets[blockade] + k];
+    }
+
+    /**
+     * Get the fire of the k-th pair blocked by the given blockade.
+     *
+     * @param blockade index of the blockade.
+     * @param k index of the pair, lower than {@link #getNumBlockedPairs(int)}.
+     * @return index of the fire that can not be reached.
+     */
+    public int getBlockedFire(int blockade, int k) {
+        return blockedPairFires[blockedPairsOffsets[blockade] + k];
+    }
 
-        for (Map.Entry<Pair<EntityID,EntityID>, EntityID> entry : blockedFireAgents.entrySet()) {
-            if (!entry.getValue().equals(blockade)) {
-                continue;
+    /**
+     * Check if any blockade has appeared since the previous problem was built. New blockades
+     * may block any path, so previous blocked paths can only be reused if there are none.
+     */
+    private boolean hasNewBlockades() {
+        for (EntityID blockade : blockades) {
+            if (previous.getBlockadeIndex(blockade) < 0) {
+                return true;
             }
-            result.add(entry.getKey());
         }
+        return false;
+    }
 
-        return result;
+    /**
+     * Check if a blockade that blocked some path in the previous problem still blocks it.
+     */
+    private boolean isBlockadeStillPresent(EntityID blockade) {
+        if (getBlockadeIndex(blockade) < 0) {
+            return false;
+        }
+        Blockade b = (Blockade)world.getEntity(blockade);
+        return b.getRepairCost() > 0;
     }
 
     private void computeBlockedFireAgents() {
         Logger.debug("Computing blocked fire agents...");
-        for (EntityID agent : getFireAgents()) {
+        final int nFires = fires.size();
+        fireBlockers = new int[fireAgents.size() * nFires];
+        int[] nBlockedPairs = new int[blockades.size()];
+
+        for (int i=0; i<fireAgents.size(); i++) {
+            final EntityID agent = fireAgents.get(i);
             Human hagent = (Human)world.getEntity(agent);
             EntityID position = hagent.getPosition();
+            Map<EntityID, EntityID> tree = null;
 
-            for (EntityID target: getFires()) {
-                SearchResults results = pathDB.search(position, target);
-                List<Blockade> pathBlockades = results.getPathBlocks();
-                if (!pathBlockades.isEmpty()) {
-                    Logger.trace("Firefighter {} blocked from reaching fire {} by {}", agent, target, pathBlockades.get(0).getID());
-                    blockedFireAgents.put(new Pair<>(agent, target), pathBlockades.get(0).getID());
+            for (int j=0; j<nFires; j++) {
+                final EntityID target = fires.get(j);
+                int blocker = NOT_BLOCKED;
+
+                if (reuseBlockedPaths && !changes.hasMoved(agent)
+                        && previous.getFireIndex(target) >= 0) {
+                    EntityID previousBlocker = previous.getBlockadeBlockingFireAgent(agent, target);
+                    if (previousBlocker == null) {
+                        fireBlockers[i*nFires + j] = NOT_BLOCKED;
+                        continue;
+                    }
+                    if (isBlockadeStillPresent(previousBlocker)) {
+                        blocker = getBlockadeIndex(previousBlocker);
+                    }
                 }
+
+                if (blocker == NOT_BLOCKED) {
+                    if (tree == null) {
+                        tree = computeBlockadeTree(position);
+                    }
+                    blocker = findFirstBlocker(position, target, tree, null);
+                    if (blocker != NOT_BLOCKED) {
+                        Logger.trace("Firefighter {} blocked from reaching fire {} by {}", agent, target, blockades.get(blocker));
+                    }
+                }
+
+                fireBlockers[i*nFires + j] = blocker;
+                if (blocker != NOT_BLOCKED) {
+                    nBlockedPairs[blocker]++;
+                }
+            }
+        }
+
+        // Build the inverted index
+        blockedPairsOffsets = new int[blockades.size()+1];
+        for (int b=0; b<nBlockedPairs.length; b++) {
+            blockedPairsOffsets[b+1] = blockedPairsOffsets[b] + nBlockedPairs[b];
+            nBlockedPairs[b] = blockedPairsOffsets[b];
+        }
+        blockedPairAgents = new int[blockedPairsOffsets[nBlockedPairs.length]];
+        blockedPairFires = new int[blockedPairAgents.length];
+        for (int k=0; k<fireBlockers.length; k++) {
+            final int b = fireBlockers[k];
+            if (b != NOT_BLOCKED) {
+                blockedPairAgents[nBlockedPairs[b]] = k / nFires;
+                blockedPairFires[nBlockedPairs[b]] = k % nFires;
+                nBlockedPairs[b]++;
             }
         }
-        Logger.debug("Done computing blocked fire agents.");
+        Logger.debug("Done computing blocked fire agents ({} blocked pairs).", blockedPairAgents.length);
     }
 
     private void computeBlockedPoliceAgents() {
         Logger.debug("Computing blocked police agents...");
-        for (EntityID agent : getPoliceAgents()) {
+        final int nBlockades = blockades.size();
+        policeBlockers = new int[policeAgents.size() * nBlockades];
+
+        for (int i=0; i<policeAgents.size(); i++) {
+            final EntityID agent = policeAgents.get(i);
             Human hagent = (Human)world.getEntity(agent);
             EntityID agentPosition = hagent.getPosition();
+            Map<EntityID, EntityID> tree = null;
 
-            for (EntityID target: getBlockades()) {
-                Blockade blockade = (Blockade)world.getEntity(target);
-                EntityID targetPosition = blockade.getPosition();
-                SearchResults results = pathDB.search(agentPosition, targetPosition);
-                List<Blockade> pathBlockades = results.getPathBlocks();
-                if (!pathBlockades.isEmpty() && !pathBlockades.get(0).getID().equals(target)) {
-                    Logger.trace("Police agent {} blocked from reaching blockade {} by {}", agent, target, pathBlockades.get(0).getID());
-                    blockedPoliceAgents.put(new Pair<>(agent, target), pathBlockades.get(0).getID());
+            for (int j=0; j<nBlockades; j++) {
+                final EntityID target = blockades.get(j);
+                int blocker = NOT_BLOCKED;
+
+                if (reuseBlockedPaths && !changes.hasMoved(agent)
+                        && previous.getBlockadeIndex(target) >= 0
+                        && !changes.hasBlockadeChanged(target)) {
+                    EntityID previousBlocker = previous.getBlockadeBlockingPoliceAgent(agent, target);
+                    if (previousBlocker == null) {
+                        policeBlockers[i*nBlockades + j] = NOT_BLOCKED;
+                        continue;
+                    }
+                    if (isBlockadeStillPresent(previousBlocker)) {
+                        blocker = getBlockadeIndex(previousBlocker);
+                    }
                 }
+
+                if (blocker == NOT_BLOCKED) {
+                    Blockade blockade = (Blockade)world.getEntity(target);
+                    EntityID targetPosition = blockade.getPosition();
+                    if (tree == null) {
+                        tree = computeBlockadeTree(agentPosition);
+                    }
+                    blocker = findFirstBlocker(agentPosition, targetPosition, tree, target);
+                    if (blocker != NOT_BLOCKED) {
+                        Logger.trace("Police agent {} blocked from reaching blockade {} by {}", agent, target, blockades.get(blocker));
+                    }
+                }
+
+                policeBlockers[i*nBlockades + j] = blocker;
             }
         }
         Logger.debug("Done computing blocked police agents.");
     }
 
+    /**
+     * Compute the first blockade along the paths from the given position to every other area,
+     * if enabled.
+     *
+     * @return map from areas to their first blockade, or <em>null</em> to search each path.
+     */
+    private Map<EntityID, EntityID> computeBlockadeTree(EntityID position) {
+        if (blockadeTree == null || !(world.getEntity(position) instanceof Area)) {
+            return null;
+        }
+        return blockadeTree.compute(position);
+    }
+
+    /**
+     * Get the index of the first blockade in the path between two areas, unless it is the
+     * target itself.
+     */
+    private int findFirstBlocker(EntityID from, EntityID to, Map<EntityID, EntityID> tree,
+            EntityID target) {
+        EntityID first;
+        if (tree != null && tree.containsKey(to)) {
+            first = tree.get(to);
+        } else {
+            List<Blockade> pathBlockades = pathDB.search(from, to).getPathBlocks();
+            first = pathBlockades.isEmpty() ? null : pathBlockades.get(0).getID();
+        }
+
+        if (first == null || first.equals(target)) {
+            return NOT_BLOCKED;
+        }
+        final int idx = getBlockadeIndex(first);
+        if (idx < 0) {
+            Logger.warn("Path blocked by blockade {}, which is not part of the problem.", first);
+            return NOT_BLOCKED;
+        }
+        return idx;
+    }
+
     /**
      * Reads the utility value for the specified fire brigade and target fire.
      *
@@ -252,9 +800,48 @@ public class ProblemDefinition {
      * @return the utility value for the specified agent and target.
      */
     public double getFireUtility(EntityID firefigher, EntityID fire) {
-        final int i = id2idx.get(firefigher);
-        final int j = id2idx.get(fire);
-        return fireUtilityMatrix[i][j];
+        final int i = fireAgentIdx.get(firefigher);
+        final int j = fireIdx.get(fire);
+        return getFireUtility(i, j);
+    }
+
+    /**
+     * Reads the utility value for the specified fire brigade and target fire.
+     *
+     * @param fireAgent index of the fire brigade
+     * @param fire index of the fire
+     * @return the utility value for the specified agent and target.
+     * @see #getFireAgentIndex(EntityID)
+     * @see #getFireIndex(EntityID)
+     */
+    public double getFireUtility(int fireAgent, int fire) {
+        if (fireUtilityRows == null) {
+            return fireUtilities.get(fireAgent, fire);
+        }
+
+        final double utility = getStoredFireUtility(fireAgent, fire);
+        if (!Double.isNaN(utility)) {
+            return utility;
+        }
+        // Not a candidate edge, so compute it on demand
+        final EntityID agent = fireAgents.get(fireAgent);
+        final EntityID target = fires.get(fire);
+        return adjustUtility(utilityFunction.getFireUtility(agent, target), target,
+                lastAssignment.getAssignment(agent));
+    }
+
+    /**
+     * Get the utility stored for the given fire brigade and fire.
+     *
+     * @return the stored utility, or <em>NaN</em> if it has not been computed.
+     */
+    private double getStoredFireUtility(int fireAgent, int fire) {
+        if (fireUtilityRows == null) {
+            return fireUtilities.get(fireAgent, fire);
+        }
+        final int from = fireUtilityRows[fireAgent], to = fireUtilityRows[fireAgent+1];
+        final int k = Arrays.binarySearch(fireUtilityColumns, from, to, fire);
+        return k >= 0 ? fireUtilityValues[k] : Double.NaN;
     }
 
     /**
@@ -265,9 +852,62 @@ public class ProblemDefinition {
      * @return the utility value for the specified police and blockade.
      */
     public double getPoliceUtility(EntityID police, EntityID blockade) {
-        final int i = id2idx.get(police);
-        final int j = id2idx.get(blockade);
-        return policeUtilityMatrix[i][j];
+        final int i = policeAgentIdx.get(police);
+        final int j = blockadeIdx.get(blockade);
+        return policeUtilities.get(i, j);
+    }
+
+    /**
+     * Reads the utility value for the specified police agent and blockade.
+     *
+     * @param police index of the police agent
+     * @param blockade index of the blockade
+     * @return the utility value for the specified police and blockade.
+     * @see #getPoliceAgentIndex(EntityID)
+     * @see #getBlockadeIndex(EntityID)
+     */
+    public double getPoliceUtility(int police, int blockade) {
+        return policeUtilities.get(police, blockade);
+    }
+
+    /**
+     * Get the position of the given fire brigade within the list of fire agents.
+     *
+     * @param fireAgent id of the fire brigade
+     * @return index of the fire brigade, or -1 if it is not part of this problem.
+     */
+    public int getFireAgentIndex(EntityID fireAgent) {
+        return fireAgentIdx.get(fireAgent);
+    }
+
+    /**
+     * Get the position of the given fire within the list of fires.
+     *
+     * @param fire id of the fire
+     * @return index of the fire, or -1 if it is not part of this problem.
+     */
+    public int getFireIndex(EntityID fire) {
+        return fireIdx.get(fire);
+    }
+
+    /**
+     * Get the position of the given police agent within the list of police agents.
+     *
+     * @param police id of the police agent
+     * @return index of the police agent, or -1 if it is not part of this problem.
+     */
+    public int getPoliceAgentIndex(EntityID police) {
+        return policeAgentIdx.get(police);
+    }
+
+    /**
+     * Get the position of the given blockade within the list of blockades.
+     *
+     * @param blockade id of the blockade
+     * @return index of the blockade, or -1 if it is not part of this problem.
+     */
+    public int getBlockadeIndex(EntityID blockade) {
+        return blockadeIdx.get(blockade);
     }
 
     /**
@@ -278,7 +918,7 @@ public class ProblemDefinition {
      * @return <em>true</em> if there's a blockade in the path, or <em>false</em> otherwise.
      */
     public boolean isFireAgentBlocked(EntityID agent, EntityID target) {
-        return blockedFireAgents.containsKey(new Pair<>(agent, target));
+        return getBlockadeBlockingFireAgent(agent, target) != null;
     }
 
     /**
@@ -289,7 +929,7 @@ public class ProblemDefinition {
      * @return <em>true</em> if there's a blockade in the path, or <em>false</em> otherwise.
      */
     public boolean isPoliceAgentBlocked(EntityID agent, EntityID target) {
-        return blockedPoliceAgents.containsKey(new Pair<>(agent, target));
+        return getBlockadeBlockingPoliceAgent(agent, target) != null;
     }
 
     /**
@@ -297,10 +937,11 @@ public class ProblemDefinition {
      *
      * @param agent agent trying to reach a target
      * @param target target that the agent wants to reach
-     * @return <em>true</em> if there's a blockade in the path, or <em>false</em> otherwise.
+     * @return the blockade in the path, or <em>null</em> if there is none.
      */
     public EntityID getBlockadeBlockingFireAgent(EntityID agent, EntityID target) {
-        return blockedFireAgents.get(new Pair<>(agent, target));
+        final int b = getFireAgentBlocker(getFireAgentIndex(agent), getFireIndex(target));
+        return b == NOT_BLOCKED ? null : blockades.get(b);
     }
 
     /**
@@ -308,10 +949,39 @@ public class ProblemDefinition {
      *
      * @param agent agent trying to reach a target
      * @param target target that the agent wants to reach
-     * @return <em>true</em> if there's a blockade in the path, or <em>false</em> otherwise.
+     * @return the blockade in the path, or <em>null</em> if there is none.
      */
     public EntityID getBlockadeBlockingPoliceAgent(EntityID agent, EntityID target) {
-        return blockedPoliceAgents.get(new Pair<>(agent, target));
+        final int b = getPoliceAgentBlocker(getPoliceAgentIndex(agent), getBlockadeIndex(target));
+        return b == NOT_BLOCKED ? null : blockades.get(b);
+    }
+
+    /**
+     * Get the blockade preventing the given fire agent from reaching the given fire.
+     *
+     * @param fireAgent index of the fire agent
+     * @param fire index of the fire
+     * @return index of the blockade in the path, or {@link #NOT_BLOCKED}.
+     */
+    public int getFireAgentBlocker(int fireAgent, int fire) {
+        if (fireBlockers == null || fireAgent < 0 || fire < 0) {
+            return NOT_BLOCKED;
+        }
+        return fireBlockers[fireAgent * fires.size() + fire];
+    }
+
+    /**
+     * Get the blockade preventing the given police agent from reaching the given blockade.
+     *
+     * @param policeAgent index of the police agent
+     * @param blockade index of the target blockade
+     * @return index of the blockade in the path, or {@link #NOT_BLOCKED}.
+     */
+    public int getPoliceAgentBlocker(int policeAgent, int blockade) {
+        if (policeBlockers == null || policeAgent < 0 || blockade < 0) {
+            return NOT_BLOCKED;
+        }
+        return policeBlockers[policeAgent * blockades.size() + blockade];
     }
 
     /**
@@ -333,58 +1003,142 @@ public class ProblemDefinition {
     }
 
     private Map<EntityID, List<EntityID>> acceptedNeighbors = new HashMap<>();
+
+    // Index-based views of the neighborhoods. When the problem is not pruned every agent (or
+    // target) shares the same array with all the indices.
+    private int[] allFires, allFireAgents, allBlockades, allPoliceAgents;
+    private int[][] fireAgentNeighborIdx, fireNeighborIdx;
+
+    private int[][] policeAgentNeighborIdx, blockadeNeighborIdx;
+
     private void pruneProblem() {
         final int maxAllowedNeighbors = config.getIntValue(Constants.KEY_PROBLEM_MAXNEIGHBORS);
         Logger.warn("Pruning problem down to " + maxAllowedNeighbors + " max neighbors.");
 
-        // Create and sort a list of edges
-        ArrayList<AgentFireCost> edges = new ArrayList<>();
-        for (EntityID agent : fireAgents) {
-            for (EntityID fire : fires) {
-                edges.add(new AgentFireCost(agent, fire));
-            }
+        TargetHeap[] heaps = new TargetHeap[fireAgents.size()];
+        for (int i=0; i<heaps.length; i++) {
+            heaps[i] = fireUtilityRows == null
+                    ? new TargetHeap(fireUtilities, i, fires.size())
+                    : new TargetHeap(fireUtilityValues, fireUtilityColumns,
+                            fireUtilityRows[i], fireUtilityRows[i+1]);
+        }
+        int[][][] graph = pruneGraph(heaps, fires.size(), fireAgents, maxAllowedNeighbors);
+        fireAgentNeighborIdx = graph[0];
+        fireNeighborIdx = graph[1];
+        heaps = new TargetHeap[policeAgents.size()];
+        for (int i=0; i<heaps.length; i++) {
+            heaps[i] = new TargetHeap(policeUtilities, i, blockades.size());
         }
-        Collections.sort(edges, Collections.reverseOrder());
-        //Collections.shuffle(edges, config.getRandom());
+        graph = pruneGraph(heaps, blockades.size(), policeAgents, maxAllowedNeighbors);
+        policeAgentNeighborIdx = graph[0];
+        blockadeNeighborIdx = graph[1];
 
-        // Boilerplate: initialize the map of accepted neighbors to avoid creating lists within
-        // the following loop
-        for (EntityID agent : fireAgents) {
-            acceptedNeighbors.put(agent, new ArrayList<EntityID>());
+        // Build the entity-based views of the accepted neighbors
+        int nEmptyFireAgents = addAcceptedNeighbors(fireAgents, fireAgentNeighborIdx, fires);
+        int nEmptyFires = addAcceptedNeighbors(fires, fireNeighborIdx, fireAgents);
+        int nEmptyPoliceAgents = addAcceptedNeighbors(policeAgents, policeAgentNeighborIdx, blockades);
+        int nEmptyBlockades = addAcceptedNeighbors(blockades, blockadeNeighborIdx, policeAgents);
+
+        // Report unassigned agents/targets
+        if (nEmptyFireAgents > 0 || nEmptyFires > 0) {
+            Logger.warn("There are {} unlinked fire brigades and {} unlinked fires.",
+                    nEmptyFireAgents, nEmptyFires);
         }
-        for (EntityID fire : fires) {
-            acceptedNeighbors.put(fire, new ArrayList<EntityID>());
+        if (nEmptyPoliceAgents > 0 || nEmptyBlockades > 0) {
+            Logger.warn("There are {} unlinked police agents and {} unlinked blockades.",
+                    nEmptyPoliceAgents, nEmptyBlockades);
         }
+    }
 
-        // Pick them in order so long as neither the degree of the agent nor the degree of the fire
-        // would be higher than what is allowed.
-        for (AgentFireCost edge : edges) {
-            if (acceptedNeighbors.get(edge.agent).size() >= maxAllowedNeighbors) {
-                continue;
+    /**
+     * Prunes a bipartite agents to targets graph so that no node has more than the given number
+     * of neighbors.
+     * <p/>
+     * Edges are considered in decreasing order of utility (ties broken by higher agent id, and
+     * then by lower target index), and accepted so long as neither the agent nor the target
+     * have already reached the maximum degree. Instead of sorting all the edges, each agent
+     * keeps a heap of its targets and only the best remaining edge of each agent is queued, so
+     * that just the edges that are actually inspected get extracted.
+     *
+     * @param heaps heap of the candidate targets of each agent.
+     * @param nTargets number of targets.
+     * @param agents list of agents, in the same order as the heaps.
+     * @param maxDegree maximum number of neighbors of any agent or target.
+     * @return the indices of the accepted neighbors of each agent (first element) and of each
+     * target (second element), in the order in which they were accepted.
+     */
+    private static int[][][] pruneGraph(final TargetHeap[] heaps, final int nTargets,
+            List<EntityID> agents, final int maxDegree) {
+        final int nAgents = agents.size();
+        final int degree = Math.max(0, maxDegree);
+        final int[] agentIds = new int[nAgents];
+        int[][] agentNeighbors = new int[nAgents][degree];
+        int[] agentDegrees = new int[nAgents];
+        int[][] targetNeighbors = new int[nTargets][degree];
+        int[] targetDegrees = new int[nTargets];
+
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, nAgents),
+                new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a1, Integer a2) {
+                final int t1 = heaps[a1].peek(), t2 = heaps[a2].peek();
+                int result = Double.compare(heaps[a2].peekValue(), heaps[a1].peekValue());
+                if (result == 0) {
+                    result = Integer.compare(agentIds[a2], agentIds[a1]);
+                }
+                if (result == 0) {
+                    result = Integer.compare(t1, t2);
+                }
+                return result;
             }
-            if (acceptedNeighbors.get(edge.fire).size() >= maxAllowedNeighbors) {
-                continue;
+        });
+        for (int i=0; i<nAgents; i++) {
+            agentIds[i] = agents.get(i).getValue();
+            if (degree > 0 && !heaps[i].isEmpty()) {
+                queue.add(i);
             }
-            acceptedNeighbors.get(edge.agent).add(edge.fire);
-            acceptedNeighbors.get(edge.fire).add(edge.agent);
         }
 
-        // Report unassigned agents/fires
-        int nEmptyFireAgents = 0, nEmptyFires = 0;
-        for (EntityID agent : fireAgents) {
-            if (acceptedNeighbors.get(agent).isEmpty()) {
-                nEmptyFireAgents++;
+        while (!queue.isEmpty()) {
+            final int i = queue.remove();
+            final int j = heaps[i].pop();
+            if (targetDegrees[j] < degree) {
+                agentNeighbors[i][agentDegrees[i]++] = j;
+                targetNeighbors[j][targetDegrees[j]++] = i;
             }
-        }
-        for (EntityID fire : fires) {
-            if (acceptedNeighbors.get(fire).isEmpty()) {
-                nEmptyFires++;
+            if (agentDegrees[i] < degree && !heaps[i].isEmpty()) {
+                queue.add(i);
             }
         }
-        if (nEmptyFireAgents > 0 || nEmptyFires > 0) {
-            Logger.warn("There are {} unlinked fire brigades and {} unlinked fires.",
-                    nEmptyFireAgents, nEmptyFires);
+
+        for (int i=0; i<nAgents; i++) {
+            agentNeighbors[i] = Arrays.copyOf(agentNeighbors[i], agentDegrees[i]);
+        }
+        for (int j=0; j<nTargets; j++) {
+            targetNeighbors[j] = Arrays.copyOf(targetNeighbors[j], targetDegrees[j]);
+        }
+        return new int[][][]{agentNeighbors, targetNeighbors};
+    }
+
+    /**
+     * Adds the entity-based view of the given neighborhoods to the accepted neighbors map.
+     *
+     * @return the number of nodes without any neighbor.
+     */
+    private int addAcceptedNeighbors(List<EntityID> nodes, int[][] neighborIdx,
+            List<EntityID> neighbors) {
+        int nEmpty = 0;
+        for (int i=0; i<nodes.size(); i++) {
+            ArrayList<EntityID> accepted = new ArrayList<>(neighborIdx[i].length);
+            for (int j : neighborIdx[i]) {
+                accepted.add(neighbors.get(j));
+            }
+            acceptedNeighbors.put(nodes.get(i), accepted);
+            if (accepted.isEmpty()) {
+                nEmpty++;
+            }
         }
+        return nEmpty;
     }
 
     /**
@@ -399,6 +1153,85 @@ public class ProblemDefinition {
         return acceptedNeighbors.get(fireAgent);
     }
 
+    /**
+     * Get the indices of the neighboring fires of the given firefighter agent.
+     * <p/>
+     * The returned array is shared and must not be modified.
+     *
+     * @param fireAgent index of the firefighter agent whose neighbors to retrieve.
+     * @return the indices of its neighbors if the problem has been pruned, or of all fires.
+     */
+    public int[] getFireAgentNeighborIndices(int fireAgent) {
+        if (fireAgentNeighborIdx == null) {
+            return allFires;
+        }
+        return fireAgentNeighborIdx[fireAgent];
+    }
+
+    /**
+     * Get the indices of the neighboring firefighters of the given fire.
+     * <p/>
+     * The returned array is shared and must not be modified.
+     *
+     * @param fire index of the fire whose neighbors to retrieve.
+     * @return the indices of its neighbors if the problem has been pruned, or of all firefighters.
+     */
+    public int[] getFireNeighborIndices(int fire) {
+        if (fireNeighborIdx == null) {
+            return allFireAgents;
+        }
+        return fireNeighborIdx[fire];
+    }
+
+    /**
+     * Get the indices of the blockades that the given police agent may attend.
+     * <p/>
+     * The returned array is shared and must not be modified.
+     *
+     * @param policeAgent index of the police agent.
+     * @return the indices of its neighbors if the problem has been pruned, or of all blockades.
+     */
+    public int[] getPoliceAgentNeighborIndices(int policeAgent) {
+        if (policeAgentNeighborIdx == null) {
+            return allBlockades;
+        }
+        return policeAgentNeighborIdx[policeAgent];
+    }
+
+    /**
+     * Get the indices of the police agents that may attend the given blockade.
+     * <p/>
+     * The returned array is shared and must not be modified.
+     *
+     * @param blockade index of the blockade.
+     * @return the indices of its neighbors if the problem has been pruned, or of all police agents.
+     */
+    public int[] getBlockadeNeighborIndices(int blockade) {
+        if (blockadeNeighborIdx == null) {
+            return allPoliceAgents;
+        }
+        return blockadeNeighborIdx[blockade];
+    }
+
+    /**
+     * Check if the given fire is a neighbor of the given firefighter agent.
+     *
+     * @param fireAgent index of the firefighter agent.
+     * @param fire index of the fire.
+     * @return <em>true</em> if the agent may attend that fire, or <em>false</em> otherwise.
+     */
+    public boolean isFireAgentNeighbor(int fireAgent, int fire) {
+        if (fireAgentNeighborIdx == null) {
+            return true;
+        }
+        for (int j : fireAgentNeighborIdx[fireAgent]) {
+            if (j == fire) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get the neighboring firefighters of the given fire.
      * @param fire fire whose neighbors to retrieve.
@@ -412,31 +1245,27 @@ public class ProblemDefinition {
     }
 
     /**
-     * Get the neighboring fires of thie given firefighter agent.
-     * @param fireAgent firefigter agent whose neighbors to retrieve.
-     * @return the list of neighbors if the problem has been pruned, or the full list of fires.
+     * Get the neighboring blockades of the given police agent.
+     * @param policeAgent police agent whose neighbors to retrieve.
+     * @return the list of neighbors if the problem has been pruned, or the full list of blockades.
      */
     public List<EntityID> getPoliceAgentNeighbors(EntityID policeAgent) {
         if (acceptedNeighbors.isEmpty()) {
             return Collections.unmodifiableList(blockades);
         }
-        // TODO: implement this
-        throw new UnsupportedOperationException("Not implemented yet.");
-        //return acceptedNeighbors.get(policeAgent);
+        return acceptedNeighbors.get(policeAgent);
     }
 
     /**
-     * Get the neighboring fires of thie given firefighter agent.
-     * @param fireAgent firefigter agent whose neighbors to retrieve.
-     * @return the list of neighbors if the problem has been pruned, or the full list of fires.
+     * Get the neighboring police agents of the given blockade.
+     * @param blockade blockade whose neighbors to retrieve.
+     * @return the list of neighbors if the problem has been pruned, or the full list of police agents.
      */
     public List<EntityID> getBlockadeNeighbors(EntityID blockade) {
         if (acceptedNeighbors.isEmpty()) {
             return Collections.unmodifiableList(policeAgents);
         }
-        // TODO: implement this
-        throw new UnsupportedOperationException("Not implemented yet.");
-        //return acceptedNeighbors.get(blockade);
+        return acceptedNeighbors.get(blockade);
     }
 
     /**
@@ -570,7 +1399,21 @@ public class ProblemDefinition {
             System.exit(1);
         }
 
-        return utilityFunction.getRequiredAgentCount(fire);
+        final int j = getFireIndex(fire);
+        if (j < 0) {
+            return utilityFunction.getRequiredAgentCount(fire);
+        }
+        return requiredAgents[j];
+    }
+
+    /**
+     * Returns the number of agents required to extinguish the fire at the given index.
+     *
+     * @param fire index of the fire
+     * @return number of agents required to extinguish it
+     */
+    public int getRequiredAgentCount(int fire) {
+        return requiredAgents[fire];
     }
 
     /**
@@ -582,12 +1425,47 @@ public class ProblemDefinition {
      * @return utility penalty incurred by this assignment
      */
     public double getUtilityPenalty(EntityID fire, int nAgents) {
-        int maxAgents = getRequiredAgentCount(fire);
-        if (maxAgents >= nAgents) {
+        return getExcessPenalty(nAgents - getRequiredAgentCount(fire));
+    }
+
+    /**
+     * Returns the utility penalty incurred when the given number of agents
+     * are assigned to the fire at the given index.
+     *
+     * @param fire index of the target assigned to some agents
+     * @param nAgents number of agents assigned to that target
+     * @return utility penalty incurred by this assignment
+     */
+    public double getUtilityPenalty(int fire, int nAgents) {
+        return getExcessPenalty(nAgents - requiredAgents[fire]);
+    }
+
+    private double getExcessPenalty(int excess) {
+        if (excess <= 0) {
             return 0;
         }
-        return config.getFloatValue(Constants.KEY_UTIL_K) *
-                Math.pow(nAgents-maxAgents, config.getFloatValue(Constants.KEY_UTIL_ALPHA));
+        if (excess < excessPenalties.length) {
+            return excessPenalties[excess];
+        }
+        return penaltyK * Math.pow(excess, penaltyAlpha);
+    }
+
+    /**
+     * Computes the number of agents required by each fire, and tabulates the penalty for
+     * exceeding that number by up to the total number of fire agents.
+     */
+    private void computeFireRequirements() {
+        requiredAgents = new int[fires.size()];
+        for (int j=0; j<requiredAgents.length; j++) {
+            requiredAgents[j] = utilityFunction.getRequiredAgentCount(fires.get(j));
+        }
+
+        penaltyK = config.getFloatValue(Constants.KEY_UTIL_K);
+        penaltyAlpha = config.getFloatValue(Constants.KEY_UTIL_ALPHA);
+        excessPenalties = new double[fireAgents.size()+1];
+        for (int excess=1; excess<excessPenalties.length; excess++) {
+            excessPenalties[excess] = penaltyK * Math.pow(excess, penaltyAlpha);
+        }
     }
 
     /**
@@ -640,20 +1518,20 @@ public class ProblemDefinition {
     public int getViolations(Assignment solution) {
         int count = 0;
 
-        HashMap<EntityID, Integer> nAgentsPerTarget = new HashMap<>();
+        int[] nAgentsPerTarget = new int[fires.size()];
         for (EntityID agent : fireAgents) {
-            EntityID target = solution.getAssignment(agent);
-            int nAgents = nAgentsPerTarget.containsKey(target)
-                    ? nAgentsPerTarget.get(target) : 0;
-            nAgentsPerTarget.put(target, nAgents+1);
+            final int j = getFireIndex(solution.getAssignment(agent));
+            if (j >= 0) {
+                nAgentsPerTarget[j]++;
+            }
         }
 
         // Check violated constraints
-        for (EntityID target : nAgentsPerTarget.keySet()) {
-            int assigned = nAgentsPerTarget.get(target);
-            int max = getRequiredAgentCount(target);
+        for (int j=0; j<nAgentsPerTarget.length; j++) {
+            final int assigned = nAgentsPerTarget[j];
+            final int max = requiredAgents[j];
             if (assigned > max) {
-                Logger.debug("Violation! Target {} needs {} agents, got {}", target, max, assigned);
+                Logger.debug("Violation! Target {} needs {} agents, got {}", fires.get(j), max, assigned);
                 count += assigned - max;
             }
         }
@@ -670,35 +1548,102 @@ public class ProblemDefinition {
      */
     public int getTotalMaxAgents() {
         int count = 0;
-        for (EntityID target : fires) {
-            count += getRequiredAgentCount(target);
+        for (int required : requiredAgents) {
+            count += required;
         }
         Logger.debug("Total sum of max agents for fires: {}", count);
         return count;
     }
 
     /**
-     * Helper class to facilitate problem prunning by sorting the Fire-FireAgent pairs according
-     * to their unary utilities.
+     * Binary max-heap of the target indices of an agent, ordered by decreasing utility and then
+     * by increasing index, used to extract the agent's best targets without sorting them all.
+     * <p/>
+     * The heap works over the slice <em>[from, to)</em> of a row, whose target indices are
+     * given by the columns array (or are the positions themselves if it is <em>null</em>), or
+     * over a full row of a utility storage.
      */
-    private class AgentFireCost implements Comparable<AgentFireCost> {
-        public final EntityID agent;
-        public final EntityID fire;
-        public final double cost;
+    private static final class TargetHeap {
+        private final double[] values;
+        private final int[] columns;
+        private final UtilityStorage storage;
+        private final int row;
+        private final int[] heap;
+        private int size;
+
+        public TargetHeap(double[] values, int[] columns, int from, int to) {
+            this(values, columns, null, -1, from, to);
+        }
 
-        public AgentFireCost(EntityID agent, EntityID fire) {
-            this.agent = agent;
-            this.fire = fire;
-            this.cost = fireUtilityMatrix[id2idx.get(agent)][id2idx.get(fire)];
+        public TargetHeap(UtilityStorage storage, int row, int nColumns) {
+            this(null, null, storage, row, 0, nColumns);
         }
 
-        @Override
-        public int compareTo(AgentFireCost o) {
-            final int result = Double.compare(cost, o.cost);
-            if (result == 0) {
-                return Integer.compare(agent.hashCode(), o.agent.hashCode());
+        private TargetHeap(double[] values, int[] columns, UtilityStorage storage, int row,
+                int from, int to) {
+            this.values = values;
+            this.columns = columns;
+            this.storage = storage;
+            this.row = row;
+            size = to - from;
+            heap = new int[size];
+            for (int k=0; k<size; k++) {
+                heap[k] = from + k;
+            }
+            for (int k=size/2-1; k>=0; k--) {
+                siftDown(k);
+            }
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public int peek() {
+            return column(heap[0]);
+        }
+
+        public double peekValue() {
+            return value(heap[0]);
+        }
+
+        public int pop() {
+            final int top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return column(top);
+        }
+
+        private double value(int position) {
+            return storage == null ? values[position] : storage.get(row, position);
+        }
+
+        private int column(int position) {
+            return columns == null ? position : columns[position];
+        }
+
+        private boolean better(int p1, int p2) {
+            final int result = Double.compare(value(p1), value(p2));
+            return result > 0 || (result == 0 && column(p1) < column(p2));
+        }
+
+        private void siftDown(int k) {
+            final int item = heap[k];
+            while (true) {
+                int child = 2*k + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child+1 < size && better(heap[child+1], heap[child])) {
+                    child++;
+                }
+                if (!better(heap[child], item)) {
+                    break;
+                }
+                heap[k] = heap[child];
+                k = child;
             }
-            return result;
+            heap[k] = item;
         }
     }
 
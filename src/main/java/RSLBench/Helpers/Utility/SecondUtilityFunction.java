@@ -4,14 +4,16 @@
  */
 package RSLBench.Helpers.Utility;
 
-import RSLBench.Constants;
 import RSLBench.Helpers.Distance;
 import RSLBench.PlatoonFireAgent;
 import RSLBench.PlatoonPoliceAgent;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import rescuecore2.config.Config;
 import rescuecore2.misc.Pair;
 import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.StandardWorldModel;
 import rescuecore2.worldmodel.EntityID;
 
 /**
@@ -22,14 +24,43 @@ import rescuecore2.worldmodel.EntityID;
 public class SecondUtilityFunction extends AbstractUtilityFunction {
     private static final Logger Logger = LogManager.getLogger(SecondUtilityFunction.class);
 
-    private Double maxDistance = null;
+    private double maxDistance;
+    private double fireDistanceThreshold;
+    private double policeDistanceThreshold;
 
     @Override
-    public double getFireUtility(EntityID agent, EntityID target) {
-        if (maxDistance == null) {
-            maxDistance = getMaxDistance();
+    public void setWorld(StandardWorldModel world) {
+        super.setWorld(world);
+        maxDistance = getMaxDistance();
+    }
+
+    @Override
+    public void setConfig(Config config) {
+        super.setConfig(config);
+        fireDistanceThreshold = config.getFloatValue(PlatoonFireAgent.MAX_DISTANCE_KEY);
+        policeDistanceThreshold = config.getFloatValue(PlatoonPoliceAgent.DISTANCE_KEY);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The agent's location is retrieved only once for the whole row.
+     */
+    @Override
+    public void getFireUtilities(EntityID agent, List<EntityID> fires, int[] indices, double[] row) {
+        final Pair<Integer, Integer> location = Distance.getLocation(agent, world);
+        for (int k=0; k<indices.length; k++) {
+            final EntityID target = fires.get(indices[k]);
+            row[k] = getFireUtility(agent, target, Distance.locationToEntity(location, target, world));
         }
+    }
+
+    @Override
+    public double getFireUtility(EntityID agent, EntityID target) {
+        return getFireUtility(agent, target, Distance.humanToBuilding(agent, target, world));
+    }
 
+    private double getFireUtility(EntityID agent, EntityID target, double distance) {
         Building b = (Building) world.getEntity(target);
         double f = b.getFieryness();
         double utility = 1.0;
@@ -41,38 +72,50 @@ public class SecondUtilityFunction extends AbstractUtilityFunction {
             utility = 1;
         }
 
-        double distance = Distance.humanToBuilding(agent, target, world);
-        double threshold = config.getFloatValue(PlatoonFireAgent.MAX_DISTANCE_KEY);
-        if (distance < threshold) {
+        if (distance < fireDistanceThreshold) {
             distance = 0;
         }
         double factor = distance/maxDistance;
         factor = Math.pow(factor, 2);
 
         // Add some noise to break ties
-        factor += config.getRandom().nextDouble()/10000;
+        factor += getNoise(agent, target)/10000;
 
-        double tradeoff = config.getFloatValue(Constants.KEY_UTIL_TRADEOFF);
         utility = utility - factor * tradeoff;
 
         //Logger.warn("Distance {}, factor {}, utility {}", distance, factor, utility);
         return utility;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The agent's location is retrieved only once for the whole row.
+     */
     @Override
-    public double getPoliceUtility(EntityID policeAgent, EntityID blockade) {
-        if (maxDistance == null) {
-            maxDistance = getMaxDistance();
+    public void getPoliceUtilities(EntityID policeAgent, List<EntityID> blockades, int[] indices,
+            double[] row) {
+        final Pair<Integer, Integer> location = Distance.getLocation(policeAgent, world);
+        for (int k=0; k<indices.length; k++) {
+            final EntityID blockade = blockades.get(indices[k]);
+            row[k] = getPoliceUtility(policeAgent, blockade, Distance.locationToBlockade(
+                    location, blockade, world, policeDistanceThreshold));
         }
+    }
+
+    @Override
+    public double getPoliceUtility(EntityID policeAgent, EntityID blockade) {
+        return getPoliceUtility(policeAgent, blockade, Distance.humanToBlockade(
+                policeAgent, blockade, world, policeDistanceThreshold));
+    }
 
-        double threshold = config.getFloatValue(PlatoonPoliceAgent.DISTANCE_KEY);
-        double distance = Distance.humanToBlockade(policeAgent, blockade, world, threshold);
+    private double getPoliceUtility(EntityID policeAgent, EntityID blockade, double distance) {
         Logger.debug("Distance from police {} to blockade {}: {}", policeAgent, blockade, distance);
         double utility = distance/maxDistance;
         utility = 1-Math.pow(utility, 2);
 
         // Add some noise to break ties
-        utility += config.getRandom().nextDouble()/10000;
+        utility += getNoise(policeAgent, blockade)/10000;
 
         // Downscale police utilities to subjugate them to fire agents
         utility /= 1000;
@@ -97,7 +140,7 @@ public class SecondUtilityFunction extends AbstractUtilityFunction {
         Building b = (Building) world.getEntity(target);
 
         int area = b.getTotalArea();
-        double neededAgents = Math.ceil(area / config.getFloatValue(Constants.KEY_AREA_COVERED_BY_FIRE_BRIGADE));
+        double neededAgents = Math.ceil(area / fireBrigadeArea);
 
         if (b.getFieryness() == 1) {
             neededAgents *= 1.5;
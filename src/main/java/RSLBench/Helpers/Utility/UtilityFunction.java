@@ -5,6 +5,7 @@
 package RSLBench.Helpers.Utility;
 
 import java.util.HashMap;
+import java.util.List;
 import rescuecore2.config.Config;
 import rescuecore2.standard.entities.StandardWorldModel;
 import rescuecore2.worldmodel.EntityID;
@@ -46,6 +47,30 @@ public interface UtilityFunction {
      */
     public double getPoliceUtility(EntityID policeAgent, EntityID blockade);
 
+    /**
+     * Get the utilities obtained if the given agent attends each of the given fires.
+     *
+     * @param fireAgent agent attending.
+     * @param fires list of fires.
+     * @param indices indices (within <em>fires</em>) of the fires to evaluate.
+     * @param row array where the utility of attending <em>fires.get(indices[k])</em> is stored
+     * at position <em>k</em>.
+     */
+    public void getFireUtilities(EntityID fireAgent, List<EntityID> fires, int[] indices,
+            double[] row);
+
+    /**
+     * Get the utilities obtained if the given police attends each of the given blockades.
+     *
+     * @param policeAgent agent attending.
+     * @param blockades list of blockades.
+     * @param indices indices (within <em>blockades</em>) of the blockades to evaluate.
+     * @param row array where the utility of attending <em>blockades.get(indices[k])</em> is
+     * stored at position <em>k</em>.
+     */
+    public void getPoliceUtilities(EntityID policeAgent, List<EntityID> blockades, int[] indices,
+            double[] row);
+
     /**
      * Get the maximum number of agents that can be allocated to <em<target</em>.
      * 
@@ -0,0 +1,259 @@
+package RSLBench.Helpers.Utility;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Storage of an agents (rows) to targets (columns) utility matrix.
+ * <p/>
+ * Besides the traditional array of rows, matrices can be stored in a single
+ * contiguous buffer of doubles or floats, either on the heap or off-heap
+ * (in a direct buffer), to reduce the memory footprint of very large
+ * scenarios. Rows can be written concurrently, so long as each row is only
+ * written by one thread.
+ */
+public abstract class UtilityStorage {
+    private static final Logger Logger = LogManager.getLogger(UtilityStorage.class);
+
+    /** Array of rows, each one stored as a separate double array (the default). */
+    public static final String TYPE_ROWS = "rows";
+    /** Single contiguous double array. */
+    public static final String TYPE_DOUBLE = "double";
+    /** Single contiguous float array. */
+    public static final String TYPE_FLOAT = "float";
+    /** Single contiguous off-heap buffer of doubles. */
+    public static final String TYPE_DIRECT_DOUBLE = "direct_double";
+    /** Single contiguous off-heap buffer of floats. */
+    public static final String TYPE_DIRECT_FLOAT = "direct_float";
+
+    protected final int nRows;
+    protected final int nColumns;
+
+    protected UtilityStorage(int nRows, int nColumns) {
+        this.nRows = nRows;
+        this.nColumns = nColumns;
+    }
+
+    /**
+     * Build a new storage of the given type.
+     * <p/>
+     * Contiguous storages are limited to 2^31 cells (bytes for direct buffers), so
+     * larger matrices fall back to the array of rows.
+     *
+     * @param type type of storage, one of the <em>TYPE_*</em> constants.
+     * @param nRows number of rows (agents).
+     * @param nColumns number of columns (targets).
+     * @return the new storage.
+     */
+    public static UtilityStorage build(String type, int nRows, int nColumns) {
+        final long cells = (long)nRows * nColumns;
+        switch (type) {
+            case TYPE_ROWS:
+                return new RowsStorage(nRows, nColumns);
+            case TYPE_DOUBLE:
+                if (cells <= Integer.MAX_VALUE) {
+                    return new DoubleStorage(nRows, nColumns);
+                }
+                break;
+            case TYPE_FLOAT:
+                if (cells <= Integer.MAX_VALUE) {
+                    return new FloatStorage(nRows, nColumns);
+                }
+                break;
+            case TYPE_DIRECT_DOUBLE:
+                if (cells * 8 <= Integer.MAX_VALUE) {
+                    return new DirectDoubleStorage(nRows, nColumns);
+                }
+                break;
+            case TYPE_DIRECT_FLOAT:
+                if (cells * 4 <= Integer.MAX_VALUE) {
+                    return new DirectFloatStorage(nRows, nColumns);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown utility storage type " + type);
+        }
+
+        Logger.warn("Utility matrix of {}x{} is too large for {} storage, using rows instead.",
+                nRows, nColumns, type);
+        return new RowsStorage(nRows, nColumns);
+    }
+
+    /**
+     * Get the number of rows of this matrix.
+     *
+     * @return number of rows.
+     */
+    public int getNumRows() {
+        return nRows;
+    }
+
+    /**
+     * Get the utility stored at the given cell.
+     *
+     * @param row row (agent index).
+     * @param column column (target index).
+     * @return the stored utility.
+     */
+    public abstract double get(int row, int column);
+
+    /**
+     * Store a full row of utilities.
+     *
+     * @param row row (agent index).
+     * @param values utilities of that agent towards each target.
+     */
+    public abstract void setRow(int row, double[] values);
+
+    /**
+     * Get the (approximate) number of bytes used to store the utilities.
+     *
+     * @return bytes used by this storage.
+     */
+    public abstract long getBytes();
+
+    /**
+     * Array of rows. The given rows are kept as is, so they may have any length.
+     */
+    private static class RowsStorage extends UtilityStorage {
+        private final double[][] rows;
+
+        public RowsStorage(int nRows, int nColumns) {
+            super(nRows, nColumns);
+            rows = new double[nRows][];
+        }
+
+        @Override
+        public double get(int row, int column) {
+            return rows[row][column];
+        }
+
+        @Override
+        public void setRow(int row, double[] values) {
+            rows[row] = values;
+        }
+
+        @Override
+        public long getBytes() {
+            long bytes = 0;
+            for (double[] row : rows) {
+                bytes += row == null ? 0 : 8L * row.length;
+            }
+            return bytes;
+        }
+    }
+
+    private static class DoubleStorage extends UtilityStorage {
+        private final double[] values;
+
+        public DoubleStorage(int nRows, int nColumns) {
+            super(nRows, nColumns);
+            values = new double[nRows * nColumns];
+        }
+
+        @Override
+        public double get(int row, int column) {
+            return values[row * nColumns + column];
+        }
+
+        @Override
+        public void setRow(int row, double[] rowValues) {
+            System.arraycopy(rowValues, 0, values, row * nColumns, nColumns);
+        }
+
+        @Override
+        public long getBytes() {
+            return 8L * values.length;
+        }
+    }
+
+    private static class FloatStorage extends UtilityStorage {
+        private final float[] values;
+
+        public FloatStorage(int nRows, int nColumns) {
+            super(nRows, nColumns);
+            values = new float[nRows * nColumns];
+        }
+
+        @Override
+        public double get(int row, int column) {
+            return values[row * nColumns + column];
+        }
+
+        @Override
+        public void setRow(int row, double[] rowValues) {
+            final int offset = row * nColumns;
+            for (int j=0; j<nColumns; j++) {
+                values[offset + j] = (float)rowValues[j];
+            }
+        }
+
+        @Override
+        public long getBytes() {
+            return 4L * values.length;
+        }
+    }
+
+    private static class DirectDoubleStorage extends UtilityStorage {
+        private final DoubleBuffer values;
+
+        public DirectDoubleStorage(int nRows, int nColumns) {
+            super(nRows, nColumns);
+            values = ByteBuffer.allocateDirect(8 * nRows * nColumns)
+                    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+
+        @Override
+        public double get(int row, int column) {
+            return values.get(row * nColumns + column);
+        }
+
+        @Override
+        public void setRow(int row, double[] rowValues) {
+            // Absolute puts do not touch the buffer's position, so rows can be written concurrently
+            final int offset = row * nColumns;
+            for (int j=0; j<nColumns; j++) {
+                values.put(offset + j, rowValues[j]);
+            }
+        }
+
+        @Override
+        public long getBytes() {
+            return 8L * values.capacity();
+        }
+    }
+
+    private static class DirectFloatStorage extends UtilityStorage {
+        private final FloatBuffer values;
+
+        public DirectFloatStorage(int nRows, int nColumns) {
+            super(nRows, nColumns);
+            values = ByteBuffer.allocateDirect(4 * nRows * nColumns)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+
+        @Override
+        public double get(int row, int column) {
+            return values.get(row * nColumns + column);
+        }
+
+        @Override
+        public void setRow(int row, double[] rowValues) {
+            // Absolute puts do not touch the buffer's position, so rows can be written concurrently
+            final int offset = row * nColumns;
+            for (int j=0; j<nColumns; j++) {
+                values.put(offset + j, (float)rowValues[j]);
+            }
+        }
+
+        @Override
+        public long getBytes() {
+            return 4L * values.capacity();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package RSLBench.Helpers.Utility;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import rescuecore2.standard.entities.Blockade;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardPropertyURN;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+
+/**
+ * Summary of the world changes between two consecutive steps that can alter
+ * the utilities of a problem.
+ * <p/>
+ * Utilities depend on the location of the agents, the fieryness of the
+ * fires and the shape and location of the blockades, so only changes to
+ * those properties are tracked.
+ */
+public class WorldChanges {
+
+    private static final String POSITION = StandardPropertyURN.POSITION.toString();
+    private static final String X = StandardPropertyURN.X.toString();
+    private static final String Y = StandardPropertyURN.Y.toString();
+    private static final String FIERYNESS = StandardPropertyURN.FIERYNESS.toString();
+
+    private final Set<EntityID> movedAgents = new HashSet<>();
+    private final Set<EntityID> changedFires = new HashSet<>();
+    private final Set<EntityID> changedBlockades = new HashSet<>();
+
+    /**
+     * Build the summary of the given changes.
+     *
+     * @param changes changes received from the kernel in this step.
+     * @param world world model, already updated with those changes.
+     */
+    public WorldChanges(ChangeSet changes, StandardWorldModel world) {
+        for (EntityID id : changes.getChangedEntities()) {
+            StandardEntity entity = world.getEntity(id);
+            if (entity instanceof Blockade) {
+                changedBlockades.add(id);
+                continue;
+            }
+
+            for (Property property : changes.getChangedProperties(id)) {
+                final String urn = property.getURN();
+                if (entity instanceof Human &&
+                        (urn.equals(POSITION) || urn.equals(X) || urn.equals(Y))) {
+                    movedAgents.add(id);
+                    break;
+                }
+                if (entity instanceof Building && urn.equals(FIERYNESS)) {
+                    changedFires.add(id);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the given agent has moved.
+     *
+     * @param agent agent to check.
+     * @return <em>true</em> if the agent's location has changed.
+     */
+    public boolean hasMoved(EntityID agent) {
+        return movedAgents.contains(agent);
+    }
+
+    /**
+     * Check if the given fire has changed.
+     *
+     * @param fire fire to check.
+     * @return <em>true</em> if the building's fieryness has changed.
+     */
+    public boolean hasFireChanged(EntityID fire) {
+        return changedFires.contains(fire);
+    }
+
+    /**
+     * Check if the given blockade has changed.
+     *
+     * @param blockade blockade to check.
+     * @return <em>true</em> if any property of the blockade has changed.
+     */
+    public boolean hasBlockadeChanged(EntityID blockade) {
+        return changedBlockades.contains(blockade);
+    }
+
+    @Override
+    public String toString() {
+        return "WorldChanges{" + movedAgents.size() + " moved agents, " + changedFires.size()
+                + " changed fires, " + changedBlockades.size() + " changed blockades}";
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.Set;
 
 import RSLBench.Search.DistanceInterface;
 import RSLBench.Search.Graph;
+import RSLBench.Search.Landmarks;
 import RSLBench.Search.SearchAlgorithm;
 import RSLBench.Search.SearchFactory;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -111,6 +112,7 @@ public abstract class PlatoonAbstractAgent<E extends StandardEntity> extends Sta
         // load correct search algorithm
         search = SearchFactory.buildSearchAlgorithm(config);
         connectivityGraph = Graph.getInstance(model);
+        Landmarks.initialize(config, model);
         distanceMatrix = new DistanceInterface(model);
 
         useSpeak = config.getValue(Constants.COMMUNICATION_MODEL_KEY).equals(SPEAK_COMMUNICATION_MODEL);
@@ -26,18 +26,20 @@ public class AStar extends AbstractSearchAlgorithm
     {
         Logger.debug(Markers.GREEN, "start multi target search");
 
+        Landmarks landmarks = Landmarks.getInstance(graph.getWorld());
         PriorityQueue<SearchNode> openList = new PriorityQueue<>();
         Map<Area, SearchNode> closedList = new HashMap<>();
 
         // reverse search: add all goals to the open list
         for (Area id: goals)
         {
-            int heuristicValue = distanceMatrix.getDistance(id.getID(), start.getID());
+            int heuristicValue = heuristic(id, start, distanceMatrix, landmarks);
             openList.add(new SearchNode(id, null, 0, heuristicValue));
         }
 
         SearchNode currentNode = null;
         boolean searchComplete = false;
+        int expanded = 0;
         Set<Area> neighbors;
         while (! openList.isEmpty() && ! searchComplete)
         {
@@ -61,6 +63,7 @@ public class AStar extends AbstractSearchAlgorithm
 
             // put current node on close list
             closedList.put(currentNode.getNodeID(), currentNode);
+            expanded++;
 
             // expand node
             neighbors = graph.getNeighbors(currentNode.getNodeID());
@@ -70,11 +73,12 @@ public class AStar extends AbstractSearchAlgorithm
                 {
                     // if this neighbor is not closed, add it to the open list
                     int distanceToCurrentNode = distanceMatrix.getDistance(id.getID(), currentNode.getNodeID().getID());
-                    int heuristicValue = distanceMatrix.getDistance(id.getID(), start.getID());
+                    int heuristicValue = heuristic(id, start, distanceMatrix, landmarks);
                     openList.add(new SearchNode(id, currentNode, distanceToCurrentNode, heuristicValue));
                 }
             }
         }
+        Logger.debug("Expanded {} nodes searching from {} to {}", expanded, start, goals);
         if (! searchComplete)
         {
             // no path found
@@ -104,4 +108,17 @@ public class AStar extends AbstractSearchAlgorithm
 
         return result;
     }
+
+    /**
+     * Straight line distance between both areas, tightened by the landmarks when available.
+     */
+    private int heuristic(Area from, Area to, DistanceInterface distanceMatrix, Landmarks landmarks)
+    {
+        int distance = distanceMatrix.getDistance(from.getID(), to.getID());
+        if (landmarks != null)
+        {
+            distance = Math.max(distance, landmarks.getLowerBound(from.getID(), to.getID()));
+        }
+        return distance;
+    }
 }
@@ -0,0 +1,183 @@
+package RSLBench.Search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.Blockade;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Bidirectional Dijkstra search over the {@link CompactGraph} of the world.
+ * <p/>
+ * Two searches are run at the same time, one forward from the start and one
+ * backward from the goals (all of them at once), always expanding the side
+ * whose next node is closer. Whenever an edge connects both searches, the
+ * length of the best path found so far is updated, and the search stops as
+ * soon as the sum of the smallest distances in both open lists reaches it,
+ * since no shorter path can be found afterwards.
+ * <p/>
+ * Costs are the distances between areas, as in {@link AStar}, and the graph
+ * is assumed to be symmetric. The returned path includes both the start and
+ * the reached goal.
+ */
+public class BidirectionalSearch extends AbstractSearchAlgorithm {
+    private static final Logger Logger = LogManager.getLogger(BidirectionalSearch.class);
+
+    private static final int NONE = -1;
+
+    private static final ThreadLocal<Scratch> scratch = new ThreadLocal<>();
+
+    @Override
+    public SearchResults search(Area start, Collection<Area> goals, Graph graph, DistanceInterface distanceMatrix) {
+        final CompactGraph g = CompactGraph.getInstance(graph.getWorld());
+        final int s = g.getIndex(start.getID());
+        if (s < 0) {
+            Logger.error("Area {} is not in the search graph", start);
+            return null;
+        }
+
+        final Scratch state = getScratch(g.getNumAreas());
+        final int stamp = state.reset();
+        final Side forward = state.forward;
+        final Side backward = state.backward;
+
+        forward.reach(s, 0, NONE, stamp);
+        for (Area goal : goals) {
+            final int t = g.getIndex(goal.getID());
+            if (t >= 0) {
+                backward.reach(t, 0, NONE, stamp);
+            }
+        }
+
+        long best = Long.MAX_VALUE;
+        int meeting = NONE;
+        if (backward.isReached(s, stamp)) {
+            best = 0;
+            meeting = s;
+        }
+
+        int expanded = 0;
+        while (!forward.open.isEmpty() && !backward.open.isEmpty()) {
+            if (forward.open.peekKey() + backward.open.peekKey() >= best) {
+                break;
+            }
+
+            // Expand the side whose next node is closer to its origin
+            final Side side, other;
+            if (forward.open.peekKey() <= backward.open.peekKey()) {
+                side = forward;
+                other = backward;
+            } else {
+                side = backward;
+                other = forward;
+            }
+
+            final int u = side.open.poll();
+            side.closed[u] = stamp;
+            expanded++;
+            final long du = side.distances[u];
+            for (int k = g.getNeighborsStart(u), end = g.getNeighborsEnd(u); k < end; k++) {
+                final int v = g.getNeighbor(k);
+                final long dv = du + g.getLength(k);
+                if (side.closed[v] != stamp && (!side.isReached(v, stamp) || dv < side.distances[v])) {
+                    side.reach(v, dv, u, stamp);
+                }
+                if (other.isReached(v, stamp)) {
+                    final long length = side.distances[v] + other.distances[v];
+                    if (length < best) {
+                        best = length;
+                        meeting = v;
+                    }
+                }
+            }
+        }
+        Logger.debug("Expanded {} nodes searching from {} to {}", expanded, start, goals);
+
+        if (meeting == NONE) {
+            return null;
+        }
+
+        // Walk back from the meeting point to the start, and then forward to the goal
+        List<EntityID> pathIds = new ArrayList<>();
+        for (int current = meeting; current != NONE; current = forward.parents[current]) {
+            pathIds.add(g.getID(current));
+        }
+        Collections.reverse(pathIds);
+        for (int current = backward.parents[meeting]; current != NONE; current = backward.parents[current]) {
+            pathIds.add(g.getID(current));
+        }
+
+        List<Blockade> blockers = new ArrayList<>();
+        for (EntityID id : pathIds) {
+            addBlockers(graph, blockers, (Area)graph.getWorld().getEntity(id));
+        }
+
+        SearchResults result = new SearchResults();
+        result.setPathIds(pathIds);
+        result.setPathBlocks(blockers);
+        return result;
+    }
+
+    private static Scratch getScratch(int nAreas) {
+        Scratch state = scratch.get();
+        if (state == null || state.forward.distances.length != nAreas) {
+            state = new Scratch(nAreas);
+            scratch.set(state);
+        }
+        return state;
+    }
+
+    /**
+     * State of one of the two searches. Entries are only valid if their stamp matches the current
+     * search, so the arrays never need to be cleared.
+     */
+    private static class Side {
+        private final IndexedHeap open;
+        private final long[] distances;
+        private final int[] parents;
+        private final int[] stamps;
+        private final int[] closed;
+
+        public Side(int nAreas) {
+            open = new IndexedHeap(nAreas);
+            distances = new long[nAreas];
+            parents = new int[nAreas];
+            stamps = new int[nAreas];
+            closed = new int[nAreas];
+        }
+
+        public boolean isReached(int node, int stamp) {
+            return stamps[node] == stamp;
+        }
+
+        public void reach(int node, long distance, int parent, int stamp) {
+            stamps[node] = stamp;
+            distances[node] = distance;
+            parents[node] = parent;
+            open.insertOrDecrease(node, distance);
+        }
+    }
+
+    private static class Scratch {
+        private final Side forward;
+        private final Side backward;
+        private int stamp = 0;
+
+        public Scratch(int nAreas) {
+            forward = new Side(nAreas);
+            backward = new Side(nAreas);
+        }
+
+        public int reset() {
+            forward.open.clear();
+            backward.open.clear();
+            return ++stamp;
+        }
+    }
+
+}
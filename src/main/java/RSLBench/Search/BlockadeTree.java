@@ -0,0 +1,131 @@
+package RSLBench.Search;
+
+import RSLBench.Helpers.PathCache.ShortestPathTrees;
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.Blockade;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Computes the first blockade found along the shortest path from one area to
+ * every other area in a single traversal.
+ * <p/>
+ * The shortest path tree is built exactly as those of the paths database
+ * (see {@link ShortestPathTrees}), with the same edge costs for the
+ * configured search class (hops for breadth-first search, distances
+ * otherwise), and the first blockade of each area is propagated from its
+ * parent in the tree. When several paths are equally short, the one chosen
+ * may still differ from the one stored in the paths database if that path
+ * was computed from the other end.
+ * <p/>
+ * The first blockade within each area is cached, so an instance should only
+ * be used while the world's blockades do not change.
+ */
+public class BlockadeTree {
+
+    /** Marker for areas that do not contain any (uncleared) blockade */
+    private static final EntityID NO_BLOCKADE = new EntityID(-1);
+
+    private final StandardWorldModel world;
+    private final List<StandardEntity> areas;
+    private final TIntIntHashMap areaIdx;
+    private final int[][] graph;
+    private final Map<Area, EntityID> areaBlockades = new HashMap<>();
+
+    /**
+     * Build a new blockade tree calculator.
+     *
+     * @param world world model
+     * @param searchClass configured search class (simple name), which defines the edge costs
+     */
+    public BlockadeTree(StandardWorldModel world, String searchClass) {
+        this.world = world;
+        areas = ShortestPathTrees.getSortedAreas(world);
+        areaIdx = ShortestPathTrees.buildIndex(ShortestPathTrees.getAreaIds(areas));
+        graph = ShortestPathTrees.buildGraph(areas, world, searchClass);
+    }
+
+    /**
+     * Compute the first blockade along the shortest path from the given
+     * origin to every reachable area.
+     * <p/>
+     * Both the origin and the destination areas are considered part of the
+     * path, as in {@link SearchResults}.
+     *
+     * @param origin area where the paths start
+     * @return map from each reachable area to the first blockade in the path
+     * to it, or <em>null</em> if the path is clear. Unreachable areas are not
+     * contained in the map.
+     */
+    public Map<EntityID, EntityID> compute(EntityID origin) {
+        final int s = areaIdx.get(origin.getValue());
+        if (s < 0) {
+            throw new RuntimeException("Requested blockade tree from a non-area entity " + origin);
+        }
+
+        final int n = areas.size();
+        final int[] predecessors = ShortestPathTrees.computeTree(s, graph[0], graph[1], graph[2]);
+        final EntityID[] first = new EntityID[n];
+        final boolean[] resolved = new boolean[n];
+        first[s] = getFirstBlockade((Area)areas.get(s));
+        resolved[s] = true;
+
+        // Resolve each area after its ancestors in the tree, walking up to the closest resolved one
+        int[] stack = new int[16];
+        for (int i=0; i<n; i++) {
+            if (resolved[i] || predecessors[i] == ShortestPathTrees.NO_PREDECESSOR) {
+                continue;
+            }
+            int size = 0;
+            for (int current = i; !resolved[current]; current = predecessors[current]) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = current;
+            }
+            while (size > 0) {
+                final int current = stack[--size];
+                EntityID blockade = first[predecessors[current]];
+                if (blockade == null) {
+                    blockade = getFirstBlockade((Area)areas.get(current));
+                }
+                first[current] = blockade;
+                resolved[current] = true;
+            }
+        }
+
+        Map<EntityID, EntityID> result = new HashMap<>();
+        for (int i=0; i<n; i++) {
+            if (resolved[i]) {
+                result.put(areas.get(i).getID(), first[i]);
+            }
+        }
+        return result;
+    }
+
+    private EntityID getFirstBlockade(Area area) {
+        EntityID first = areaBlockades.get(area);
+        if (first == null) {
+            first = NO_BLOCKADE;
+            if (area.isBlockadesDefined()) {
+                for (EntityID id : area.getBlockades()) {
+                    Blockade blockade = (Blockade)world.getEntity(id);
+                    if (blockade.getRepairCost() > 0) {
+                        first = id;
+                        break;
+                    }
+                }
+            }
+            areaBlockades.put(area, first);
+        }
+        return first == NO_BLOCKADE ? null : first;
+    }
+
+}
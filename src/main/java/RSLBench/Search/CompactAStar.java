@@ -0,0 +1,142 @@
+package RSLBench.Search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.Blockade;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * A* search over the {@link CompactGraph} of the world.
+ * <p/>
+ * Uses the same costs and heuristic as {@link AStar} (distances between
+ * areas, tightened by the {@link Landmarks} when enabled), but all the search
+ * state is kept in primitive arrays indexed by the dense area indices: edge
+ * lengths are precomputed, the open list is an indexed binary heap with
+ * decrease-key and the scratch arrays are reused across the searches of each
+ * thread.
+ * <p/>
+ * As in {@link AStar}, the search runs backwards from the goals to the
+ * start. The returned path includes both the start and the reached goal.
+ */
+public class CompactAStar extends AbstractSearchAlgorithm {
+    private static final Logger Logger = LogManager.getLogger(CompactAStar.class);
+
+    private static final int NONE = -1;
+
+    private static final ThreadLocal<Scratch> scratch = new ThreadLocal<>();
+
+    @Override
+    public SearchResults search(Area start, Collection<Area> goals, Graph graph, DistanceInterface distanceMatrix) {
+        final CompactGraph g = CompactGraph.getInstance(graph.getWorld());
+        final int s = g.getIndex(start.getID());
+        if (s < 0) {
+            Logger.error("Area {} is not in the search graph", start);
+            return null;
+        }
+
+        final Landmarks landmarks = Landmarks.getInstance(graph.getWorld());
+        final Scratch state = getScratch(g.getNumAreas());
+        final IndexedHeap open = state.open;
+        final long[] distances = state.distances;
+        final int[] next = state.next;
+        final int[] stamps = state.stamps;
+        final int stamp = state.reset();
+
+        for (Area goal : goals) {
+            final int t = g.getIndex(goal.getID());
+            if (t < 0) {
+                continue;
+            }
+            stamps[t] = stamp;
+            distances[t] = 0;
+            next[t] = NONE;
+            open.insertOrDecrease(t, heuristic(g, landmarks, t, s));
+        }
+
+        boolean found = false;
+        int expanded = 0;
+        while (!open.isEmpty()) {
+            final int u = open.poll();
+            if (u == s) {
+                found = true;
+                break;
+            }
+            expanded++;
+
+            final long du = distances[u];
+            for (int k = g.getNeighborsStart(u), end = g.getNeighborsEnd(u); k < end; k++) {
+                final int v = g.getNeighbor(k);
+                final long dv = du + g.getLength(k);
+                if (stamps[v] != stamp || dv < distances[v]) {
+                    stamps[v] = stamp;
+                    distances[v] = dv;
+                    next[v] = u;
+                    open.insertOrDecrease(v, dv + heuristic(g, landmarks, v, s));
+                }
+            }
+        }
+        Logger.debug("Expanded {} nodes searching from {} to {}", expanded, start, goals);
+        if (!found) {
+            Logger.debug("No path found from {} to {}", start, goals);
+            return null;
+        }
+
+        // Walk forward from the start to the goal
+        List<EntityID> pathIds = new ArrayList<>();
+        List<Blockade> blockers = new ArrayList<>();
+        for (int current = s; current != NONE; current = next[current]) {
+            final EntityID id = g.getID(current);
+            pathIds.add(id);
+            addBlockers(graph, blockers, (Area)graph.getWorld().getEntity(id));
+        }
+
+        SearchResults result = new SearchResults();
+        result.setPathIds(pathIds);
+        result.setPathBlocks(blockers);
+        return result;
+    }
+
+    private static long heuristic(CompactGraph g, Landmarks landmarks, int from, int to) {
+        final int distance = g.getDistance(from, to);
+        return landmarks == null ? distance : Math.max(distance, landmarks.getLowerBound(from, to));
+    }
+
+    private static Scratch getScratch(int nAreas) {
+        Scratch state = scratch.get();
+        if (state == null || state.distances.length != nAreas) {
+            state = new Scratch(nAreas);
+            scratch.set(state);
+        }
+        return state;
+    }
+
+    /**
+     * Per-thread search state. Entries are only valid if their stamp matches the current search,
+     * so the arrays never need to be cleared.
+     */
+    private static class Scratch {
+        private final IndexedHeap open;
+        private final long[] distances;
+        private final int[] next;
+        private final int[] stamps;
+        private int stamp = 0;
+
+        public Scratch(int nAreas) {
+            open = new IndexedHeap(nAreas);
+            distances = new long[nAreas];
+            next = new int[nAreas];
+            stamps = new int[nAreas];
+        }
+
+        public int reset() {
+            open.clear();
+            return ++stamp;
+        }
+    }
+
+}
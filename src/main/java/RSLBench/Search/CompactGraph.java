@@ -0,0 +1,202 @@
+package RSLBench.Search;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Connectivity graph of the world's areas in compressed sparse row form.
+ * <p/>
+ * Areas are given dense indices (sorted by id), the neighbors of area
+ * <em>i</em> are stored at positions <em>offsets[i]</em> to
+ * <em>offsets[i+1]</em> of a single array, and the length of each edge (the
+ * distance between the areas, as returned by the world model) is precomputed
+ * alongside. The location of each area is kept too, so that search
+ * heuristics do not need to go through the world model.
+ */
+public final class CompactGraph {
+
+    private static final Map<StandardWorldModel, CompactGraph> instanceMap = new HashMap<>();
+
+    private final StandardWorldModel world;
+    private final int[] areaIds;
+    private final TIntIntHashMap areaIdx;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] lengths;
+    private final int[] x;
+    private final int[] y;
+
+    public static synchronized CompactGraph getInstance(StandardWorldModel world) {
+        CompactGraph graph = instanceMap.get(world);
+        if (graph == null) {
+            graph = new CompactGraph(world);
+            instanceMap.put(world, graph);
+        }
+        return graph;
+    }
+
+    private CompactGraph(StandardWorldModel world) {
+        this.world = world;
+
+        List<Area> areas = new ArrayList<>();
+        for (Entity next : world) {
+            if (next instanceof Area) {
+                areas.add((Area)next);
+            }
+        }
+        Collections.sort(areas, new Comparator<Area>() {
+            @Override
+            public int compare(Area o1, Area o2) {
+                return Integer.compare(o1.getID().getValue(), o2.getID().getValue());
+            }
+        });
+
+        final int n = areas.size();
+        areaIds = new int[n];
+        areaIdx = new TIntIntHashMap(Math.max(10, n), 0.5f, -1, -1);
+        x = new int[n];
+        y = new int[n];
+        for (int i=0; i<n; i++) {
+            Area area = areas.get(i);
+            areaIds[i] = area.getID().getValue();
+            areaIdx.put(areaIds[i], i);
+            x[i] = area.getX();
+            y[i] = area.getY();
+        }
+
+        offsets = new int[n+1];
+        int[] adjacency = new int[n*4];
+        int[] weights = new int[n*4];
+        for (int i=0; i<n; i++) {
+            Area area = areas.get(i);
+            int k = offsets[i];
+            for (EntityID neighbor : area.getNeighbours()) {
+                final int j = areaIdx.get(neighbor.getValue());
+                if (j < 0) {
+                    continue;
+                }
+                if (k == adjacency.length) {
+                    adjacency = Arrays.copyOf(adjacency, k * 2);
+                    weights = Arrays.copyOf(weights, k * 2);
+                }
+                adjacency[k] = j;
+                weights[k] = world.getDistance(area.getID(), neighbor);
+                k++;
+            }
+            offsets[i+1] = k;
+        }
+        neighbors = Arrays.copyOf(adjacency, offsets[n]);
+        lengths = Arrays.copyOf(weights, offsets[n]);
+    }
+
+    public StandardWorldModel getWorld() {
+        return world;
+    }
+
+    /**
+     * Get the number of areas in the graph.
+     *
+     * @return number of areas.
+     */
+    public int getNumAreas() {
+        return areaIds.length;
+    }
+
+    /**
+     * Get the dense index of an area.
+     *
+     * @param id id of the area.
+     * @return index of the area, or -1 if it is not an area of this graph.
+     */
+    public int getIndex(EntityID id) {
+        return areaIdx.get(id.getValue());
+    }
+
+    /**
+     * Get the id of the area with the given index.
+     *
+     * @param index index of the area.
+     * @return id of the area.
+     */
+    public EntityID getID(int index) {
+        return new EntityID(areaIds[index]);
+    }
+
+    /**
+     * Get the position of the first neighbor of an area in the neighbors array.
+     *
+     * @param index index of the area.
+     * @return start of the area's neighbors. They end at the start of the next area.
+     */
+    public int getNeighborsStart(int index) {
+        return offsets[index];
+    }
+
+    public int getNeighborsEnd(int index) {
+        return offsets[index+1];
+    }
+
+    /**
+     * Get the area at the end of an edge.
+     *
+     * @param edge position of the edge in the neighbors array.
+     * @return index of the neighbor.
+     */
+    public int getNeighbor(int edge) {
+        return neighbors[edge];
+    }
+
+    /**
+     * Get the length of an edge.
+     *
+     * @param edge position of the edge in the neighbors array.
+     * @return distance between both areas.
+     */
+    public int getLength(int edge) {
+        return lengths[edge];
+    }
+
+    /**
+     * Computes a fingerprint of the graph, so that data derived from it is not reused across
+     * different maps.
+     *
+     * @return hash of the ids, neighbors and edge lengths of all the areas.
+     */
+    public long getFingerprint() {
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<areaIds.length; i++) {
+            hash = (hash ^ areaIds[i]) * 0x100000001b3L;
+            for (int k=offsets[i]; k<offsets[i+1]; k++) {
+                hash = (hash ^ neighbors[k]) * 0x100000001b3L;
+                hash = (hash ^ lengths[k]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Get the straight line distance between two areas.
+     *
+     * @param i index of the first area.
+     * @param j index of the second area.
+     * @return distance between both areas, as computed by the world model.
+     */
+    public int getDistance(int i, int j) {
+        final double dx = x[i] - x[j];
+        final double dy = y[i] - y[j];
+        return (int)Math.hypot(dx, dy);
+    }
+
+}
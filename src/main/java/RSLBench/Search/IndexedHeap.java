@@ -0,0 +1,125 @@
+package RSLBench.Search;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of dense node indices with decrease-key support.
+ * <p/>
+ * The position of each node within the heap is tracked, so that the key of
+ * a node already in the heap can be decreased in place instead of pushing a
+ * duplicate entry.
+ */
+public class IndexedHeap {
+    private static final int ABSENT = -1;
+
+    private final int[] heap;
+    private final int[] position;
+    private final long[] keys;
+    private int size = 0;
+
+    /**
+     * Build an empty heap.
+     *
+     * @param capacity number of nodes, whose indices must be in [0, capacity).
+     */
+    public IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(position, ABSENT);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the nodes from the heap, in time proportional to its size.
+     */
+    public void clear() {
+        for (int i=0; i<size; i++) {
+            position[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    /**
+     * Insert a node, or decrease its key if it is already in the heap with a larger one.
+     *
+     * @param node node to insert.
+     * @param key key of the node.
+     */
+    public void insertOrDecrease(int node, long key) {
+        int i = position[node];
+        if (i == ABSENT) {
+            i = size++;
+        } else if (keys[node] <= key) {
+            return;
+        }
+        keys[node] = key;
+        siftUp(i, node);
+    }
+
+    /**
+     * Get the key of the node at the top of the heap.
+     *
+     * @return smallest key in the heap.
+     */
+    public long peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Remove the node with the smallest key.
+     *
+     * @return the removed node.
+     */
+    public int poll() {
+        final int top = heap[0];
+        position[top] = ABSENT;
+        size--;
+        if (size > 0) {
+            siftDown(0, heap[size]);
+        }
+        return top;
+    }
+
+    private void siftUp(int i, int node) {
+        final long key = keys[node];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            final int parentNode = heap[parent];
+            if (keys[parentNode] <= key) {
+                break;
+            }
+            heap[i] = parentNode;
+            position[parentNode] = i;
+            i = parent;
+        }
+        heap[i] = node;
+        position[node] = i;
+    }
+
+    private void siftDown(int i, int node) {
+        final long key = keys[node];
+        while (true) {
+            int child = 2*i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child+1 < size && keys[heap[child+1]] < keys[heap[child]]) {
+                child++;
+            }
+            final int childNode = heap[child];
+            if (keys[childNode] >= key) {
+                break;
+            }
+            heap[i] = childNode;
+            position[childNode] = i;
+            i = child;
+        }
+        heap[i] = node;
+        position[node] = i;
+    }
+
+}
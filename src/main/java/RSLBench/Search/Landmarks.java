@@ -0,0 +1,235 @@
+package RSLBench.Search;
+
+import RSLBench.Constants;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import rescuecore2.config.Config;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * Landmark (ALT) lower bounds of the distances between areas.
+ * <p/>
+ * A few landmark areas are picked far apart from each other, and the
+ * shortest path distances from each of them to every area are stored. By the
+ * triangle inequality, the distance between two areas is at least the
+ * difference of their distances to any landmark, which gives a much tighter
+ * admissible heuristic than the straight line distance on road networks
+ * with rivers and dead ends.
+ * <p/>
+ * Landmarks are computed once per map and stored in the cache directory, in a
+ * file named after the fingerprint of the map's {@link CompactGraph}. All the
+ * world models of the same map share the same landmarks.
+ */
+public final class Landmarks {
+    private static final Logger Logger = LogManager.getLogger(Landmarks.class);
+
+    /** Number of landmarks to use in the search heuristics (0 to disable them) */
+    public static final String KEY_LANDMARKS = "agent.search.landmarks";
+
+    private static final int MAGIC = 0x414c5431; // "ALT1"
+    private static final int VERSION = 1;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final Map<StandardWorldModel, Landmarks> instanceMap = new ConcurrentHashMap<>();
+    private static final Map<Long, int[][]> distancesCache = new HashMap<>();
+
+    private final CompactGraph graph;
+    private final int[][] distances;
+
+    private Landmarks(CompactGraph graph, int[][] distances) {
+        this.graph = graph;
+        this.distances = distances;
+    }
+
+    /**
+     * Get the landmarks of the given world.
+     *
+     * @param world world model.
+     * @return the world's landmarks, or <em>null</em> if landmarks are disabled.
+     */
+    public static Landmarks getInstance(StandardWorldModel world) {
+        return instanceMap.get(world);
+    }
+
+    /**
+     * Load (or compute and store) the landmarks of the given world, if enabled in the config.
+     *
+     * @param config configuration.
+     * @param world world model.
+     */
+    public static synchronized void initialize(Config config, StandardWorldModel world) {
+        final int nLandmarks = config.getIntValue(KEY_LANDMARKS, 0);
+        if (nLandmarks <= 0 || instanceMap.containsKey(world)) {
+            return;
+        }
+
+        final CompactGraph graph = CompactGraph.getInstance(world);
+        final long fingerprint = graph.getFingerprint();
+        int[][] distances = distancesCache.get(fingerprint);
+        if (distances == null || distances.length != nLandmarks) {
+            // Platoon agents do not know the map name, so files are named after the graph instead
+            File file = new File(config.getValue(Constants.KEY_CACHE_PATH, Constants.DEFAULT_CACHE_PATH)
+                    + "landmarks-" + Long.toHexString(fingerprint) + ".landmarks");
+            distances = load(file, fingerprint, nLandmarks);
+            if (distances == null) {
+                final long start = System.currentTimeMillis();
+                distances = compute(graph, nLandmarks);
+                Logger.info("Computed {} landmarks for {} areas in {} ms", nLandmarks,
+                        graph.getNumAreas(), System.currentTimeMillis() - start);
+                save(file, fingerprint, distances);
+            }
+            distancesCache.put(fingerprint, distances);
+        }
+        instanceMap.put(world, new Landmarks(graph, distances));
+    }
+
+    /**
+     * Get a lower bound of the distance between two areas.
+     *
+     * @param from index of the first area in the world's {@link CompactGraph}.
+     * @param to index of the second area in the world's {@link CompactGraph}.
+     * @return lower bound of the shortest path distance between both areas.
+     */
+    public int getLowerBound(int from, int to) {
+        int bound = 0;
+        for (int[] d : distances) {
+            final int df = d[from], dt = d[to];
+            if (df != UNREACHABLE && dt != UNREACHABLE) {
+                bound = Math.max(bound, Math.abs(df - dt));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Get a lower bound of the distance between two areas.
+     *
+     * @param from id of the first area.
+     * @param to id of the second area.
+     * @return lower bound of the shortest path distance between both areas, or 0 if any of them
+     * is not an area.
+     */
+    public int getLowerBound(EntityID from, EntityID to) {
+        final int i = graph.getIndex(from), j = graph.getIndex(to);
+        return i < 0 || j < 0 ? 0 : getLowerBound(i, j);
+    }
+
+    /**
+     * Pick the landmarks by farthest point selection and compute their distances to every area.
+     */
+    private static int[][] compute(CompactGraph graph, int nLandmarks) {
+        final int n = graph.getNumAreas();
+        int[][] distances = new int[nLandmarks][];
+        if (n == 0) {
+            for (int l=0; l<nLandmarks; l++) {
+                distances[l] = new int[0];
+            }
+            return distances;
+        }
+
+        // Each landmark is the area farthest from all the previous ones (from area 0 at first)
+        int[] closest = getDistances(graph, 0);
+        for (int l=0; l<nLandmarks; l++) {
+            int landmark = 0;
+            for (int i=1; i<n; i++) {
+                if (closest[i] != UNREACHABLE && closest[i] > closest[landmark]) {
+                    landmark = i;
+                }
+            }
+            distances[l] = getDistances(graph, landmark);
+            if (l == 0) {
+                closest = distances[0].clone();
+            } else {
+                for (int i=0; i<n; i++) {
+                    closest[i] = Math.min(closest[i], distances[l][i]);
+                }
+            }
+            Logger.debug("Landmark {}: area {}", l, graph.getID(landmark));
+        }
+        return distances;
+    }
+
+    private static int[] getDistances(CompactGraph graph, int source) {
+        final int n = graph.getNumAreas();
+        int[] distances = new int[n];
+        Arrays.fill(distances, UNREACHABLE);
+        IndexedHeap open = new IndexedHeap(n);
+        distances[source] = 0;
+        open.insertOrDecrease(source, 0);
+        while (!open.isEmpty()) {
+            final int u = open.poll();
+            final int du = distances[u];
+            for (int k = graph.getNeighborsStart(u), end = graph.getNeighborsEnd(u); k < end; k++) {
+                final int v = graph.getNeighbor(k);
+                final int dv = du + graph.getLength(k);
+                if (dv < distances[v]) {
+                    distances[v] = dv;
+                    open.insertOrDecrease(v, dv);
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static int[][] load(File file, long fingerprint, int nLandmarks) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint
+                    || in.readInt() != nLandmarks) {
+                Logger.warn("Recomputing stale landmarks file {}", file);
+                return null;
+            }
+            final int n = in.readInt();
+            int[][] distances = new int[nLandmarks][n];
+            for (int[] d : distances) {
+                for (int i=0; i<n; i++) {
+                    d[i] = in.readInt();
+                }
+            }
+            Logger.info("Using precomputed landmarks: {}", file);
+            return distances;
+        } catch (IOException ex) {
+            Logger.warn("Unable to read landmarks file " + file, ex);
+            return null;
+        }
+    }
+
+    private static void save(File file, long fingerprint, int[][] distances) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(distances.length);
+            out.writeInt(distances.length == 0 ? 0 : distances[0].length);
+            for (int[] d : distances) {
+                for (int distance : d) {
+                    out.writeInt(distance);
+                }
+            }
+        } catch (IOException ex) {
+            Logger.warn("Unable to store landmarks file " + file, ex);
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            Logger.warn("Unable to move {} to {}", tmpFile, file);
+        }
+    }
+
+}
@@ -26,6 +26,11 @@ public class SearchFactory {
         // retrieve data from config
         String searchClassName = config.getValue(KEY_SEARCH_CLASS);
         try {
+            // algorithms of this package (such as CompactAStar) can be given by their simple name
+            if (searchClassName.indexOf('.') < 0) {
+                searchClassName = SearchFactory.class.getPackage().getName() + "." + searchClassName;
+            }
+
             // instantiate search algorithm
             Class<?> concreteSearchClass = Class.forName(searchClassName);
             Object object = concreteSearchClass.newInstance();
@@ -0,0 +1,160 @@
+package RSLBench.Helpers.PathCache;
+
+import java.util.Random;
+import org.junit.Test;
+import rescuecore2.worldmodel.EntityID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the paths and distances of contraction hierarchies against those of plain shortest
+ * path trees, on random graphs.
+ */
+public class ContractionHierarchyTest {
+
+    private static final int ID_OFFSET = 1000;
+
+    @Test
+    public void testWeightedGraphs() {
+        Random random = new Random(42);
+        for (int i=0; i<20; i++) {
+            checkGraph(randomGraph(random, 40 + random.nextInt(60), 3, 1000));
+        }
+    }
+
+    @Test
+    public void testUnitGraphs() {
+        // Hop counts have plenty of equally short paths, which stresses the witness searches
+        Random random = new Random(7);
+        for (int i=0; i<20; i++) {
+            checkGraph(randomGraph(random, 40 + random.nextInt(60), 3, 1));
+        }
+    }
+
+    @Test
+    public void testDisconnectedGraph() {
+        // Two separate chains, 0-1-2 and 3-4
+        int[][] graph = buildGraph(5, new int[][]{{0, 1, 5}, {1, 2, 7}, {3, 4, 2}});
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(getAreaIds(5), graph);
+
+        assertEquals(12, hierarchy.getDistance(id(0), id(2)));
+        assertArrayEquals(new int[]{ID_OFFSET, ID_OFFSET+1, ID_OFFSET+2},
+                hierarchy.getPath(id(0), id(2)));
+        assertEquals(-1, hierarchy.getDistance(id(0), id(4)));
+        assertNull(hierarchy.getPath(id(2), id(3)));
+        assertNull(hierarchy.getPath(id(0), new EntityID(1)));
+    }
+
+    /**
+     * Check every pair of areas of a graph, comparing the hierarchy with Dijkstra's algorithm.
+     */
+    private void checkGraph(int[][] graph) {
+        final int n = graph[0].length - 1;
+        final int[] areaIds = getAreaIds(n);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(areaIds, graph);
+
+        for (int s=0; s<n; s++) {
+            final int[] predecessors = ShortestPathTrees.computeTree(s, graph[0], graph[1], graph[2]);
+            for (int t=0; t<n; t++) {
+                final int[] expected = ShortestPathTrees.getTreePath(predecessors, areaIds, s, t);
+                final int[] path = hierarchy.getPath(id(s), id(t));
+                final long distance = hierarchy.getDistance(id(s), id(t));
+                if (expected == null) {
+                    assertNull(path);
+                    assertEquals(-1, distance);
+                    continue;
+                }
+
+                // Equally short paths may differ, but must have the same length
+                assertNotNull("No path from " + s + " to " + t, path);
+                assertEquals(areaIds[s], path[0]);
+                assertEquals(areaIds[t], path[path.length-1]);
+                final long length = getLength(graph, expected);
+                assertEquals("Wrong path length from " + s + " to " + t, length, getLength(graph, path));
+                assertEquals("Wrong distance from " + s + " to " + t, length, distance);
+            }
+        }
+    }
+
+    /**
+     * Get the length of a path, checking that all its consecutive areas are neighbors.
+     */
+    private static long getLength(int[][] graph, int[] path) {
+        long length = 0;
+        for (int i=1; i<path.length; i++) {
+            final int u = path[i-1] - ID_OFFSET, v = path[i] - ID_OFFSET;
+            int weight = -1;
+            for (int k=graph[0][u]; k<graph[0][u+1]; k++) {
+                if (graph[1][k] == v) {
+                    weight = graph[2][k];
+                }
+            }
+            assertTrue("Areas " + u + " and " + v + " are not neighbors", weight >= 0);
+            length += weight;
+        }
+        return length;
+    }
+
+    /**
+     * Build a random graph with the given average degree, which may be disconnected.
+     */
+    private static int[][] randomGraph(Random random, int n, int degree, int maxWeight) {
+        final int m = n * degree / 2;
+        boolean[][] added = new boolean[n][n];
+        int[][] edges = new int[m][];
+        int count = 0;
+        while (count < m) {
+            final int u = random.nextInt(n), v = random.nextInt(n);
+            if (u == v || added[u][v]) {
+                continue;
+            }
+            added[u][v] = added[v][u] = true;
+            edges[count++] = new int[]{u, v, 1 + random.nextInt(maxWeight)};
+        }
+        return buildGraph(n, edges);
+    }
+
+    /**
+     * Build an undirected graph in the same form as {@link ShortestPathTrees#buildGraph}.
+     *
+     * @param n number of areas.
+     * @param edges (u, v, weight) triplets.
+     */
+    private static int[][] buildGraph(int n, int[][] edges) {
+        final int[] offsets = new int[n+1];
+        for (int[] edge : edges) {
+            offsets[edge[0]+1]++;
+            offsets[edge[1]+1]++;
+        }
+        for (int u=0; u<n; u++) {
+            offsets[u+1] += offsets[u];
+        }
+        final int[] next = offsets.clone();
+        final int[] adjacency = new int[offsets[n]];
+        final int[] weights = new int[offsets[n]];
+        for (int[] edge : edges) {
+            adjacency[next[edge[0]]] = edge[1];
+            weights[next[edge[0]]++] = edge[2];
+            adjacency[next[edge[1]]] = edge[0];
+            weights[next[edge[1]]++] = edge[2];
+        }
+        return new int[][]{offsets, adjacency, weights};
+    }
+
+    private static int[] getAreaIds(int n) {
+        int[] areaIds = new int[n];
+        for (int i=0; i<n; i++) {
+            areaIds[i] = ID_OFFSET + i;
+        }
+        return areaIds;
+    }
+
+    private static EntityID id(int index) {
+        return new EntityID(ID_OFFSET + index);
+    }
+
+}